@@ -0,0 +1,48 @@
+package edu.penzgtu.bench;
+
+import edu.penzgtu.evolution.FitnessEvaluator;
+import edu.penzgtu.evolution.SensorSet;
+import edu.penzgtu.evolution.Strategy;
+import edu.penzgtu.model.Maze;
+import edu.penzgtu.util.MazeGenerator;
+import edu.penzgtu.util.RandomSource;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class FitnessEvaluatorBenchmark {
+    private static final int SAMPLES = 64;
+
+    @Param({"front,right", "front,right,left,obstacle,goal"})
+    public String sensors;
+
+    private Maze[] mazes;
+    private Strategy[] strategies;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        MazeGenerator generator = new MazeGenerator();
+        RandomSource random = new RandomSource(42);
+        SplittableRandom rand = random.stream("strategies");
+        mazes = new Maze[SAMPLES];
+        strategies = new Strategy[SAMPLES];
+        for (int i = 0; i < SAMPLES; i++) {
+            mazes[i] = generator.generateValidMaze(random.stream("bench", i));
+            strategies[i] = new Strategy(SensorSet.parse(sensors), rand);
+        }
+    }
+
+    @Benchmark
+    public double evaluate() {
+        int i = next++;
+        return FitnessEvaluator.evaluate(strategies[i & (SAMPLES - 1)], mazes[(i >>> 6) & (SAMPLES - 1)]);
+    }
+}
@@ -0,0 +1,51 @@
+package edu.penzgtu.bench;
+
+import edu.penzgtu.evolution.*;
+import edu.penzgtu.util.MazeGenerator;
+import edu.penzgtu.util.MazePool;
+import edu.penzgtu.util.RandomSource;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+// One evaluate() + evolve() cycle per invocation. The pool does not rotate, so the score
+// reflects the algorithm and evaluation cost, not maze generation.
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class GenerationCycleBenchmark {
+    @Param({"GA", "ES", "SA"})
+    public String algorithm;
+
+    @Param({"50", "10000"})
+    public int populationSize;
+
+    @Param({"8"})
+    public int poolSize;
+
+    private MazePool mazes;
+    private EvolutionaryAlgorithm ea;
+
+    @Setup
+    public void setUp() {
+        RandomSource random = new RandomSource(42);
+        mazes = new MazePool(new MazeGenerator(), poolSize, 0, random.getSeed());
+        switch (algorithm) {
+            case "GA": ea = new GeneticAlgorithm(PopulationEvaluator.sequential(), random); break;
+            case "ES": ea = new EvolutionStrategy(PopulationEvaluator.sequential(), random); break;
+            case "SA": ea = new SimulatedAnnealing(PopulationEvaluator.sequential(), random); break;
+            default: throw new IllegalArgumentException("Unknown algorithm: " + algorithm);
+        }
+        ea.initialize(populationSize);
+    }
+
+    @Benchmark
+    public Individual evaluateAndEvolve() {
+        ea.evaluate(mazes);
+        ea.evolve();
+        return ea.getBest();
+    }
+}
@@ -0,0 +1,54 @@
+package edu.penzgtu.bench;
+
+import edu.penzgtu.model.Maze;
+import edu.penzgtu.model.MazeConfig;
+import edu.penzgtu.util.MazeGenerator;
+import edu.penzgtu.util.RandomSource;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class MazeGenerationBenchmark {
+    @Param({"REJECTION", "REPAIR"})
+    public MazeGenerator.Mode mode;
+
+    private MazeGenerator generator;
+    private final RandomSource random = new RandomSource(42);
+    private long index;
+
+    @Setup
+    public void setUp() {
+        generator = new MazeGenerator(MazeConfig.DEFAULT, mode);
+    }
+
+    // Reported next to the throughput: carved layouts and path checks divided by valid mazes give the
+    // rejection cost, and path checks also cover REPAIR's repairs and obstacle re-placements.
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class Attempts {
+        public long attempts;
+        public long pathChecks;
+        public long mazes;
+    }
+
+    @Benchmark
+    public Maze generateValidMaze(Attempts counters) {
+        long before = generator.getAttemptCount();
+        long checksBefore = pathChecks();
+        Maze maze = generator.generateValidMaze(random.stream("bench", index++));
+        counters.attempts += generator.getAttemptCount() - before;
+        counters.pathChecks += pathChecks() - checksBefore;
+        counters.mazes++;
+        return maze;
+    }
+
+    private long pathChecks() {
+        return generator.getAttemptCount() + generator.getRepairCount() + generator.getObstaclePlacementCount();
+    }
+}
@@ -0,0 +1,46 @@
+package edu.penzgtu.bench;
+
+import edu.penzgtu.model.Maze;
+import edu.penzgtu.util.MazeGenerator;
+import edu.penzgtu.util.Pathfinding;
+import edu.penzgtu.util.RandomSource;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class PathfindingBenchmark {
+    private static final int MAZES = 64;
+
+    private Maze[] withObstacles;
+    private Maze[] withoutObstacles;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        MazeGenerator generator = new MazeGenerator();
+        RandomSource random = new RandomSource(42);
+        withObstacles = new Maze[MAZES];
+        withoutObstacles = new Maze[MAZES];
+        for (int i = 0; i < MAZES; i++) {
+            withObstacles[i] = generator.generateValidMaze(random.stream("bench", i));
+            withoutObstacles[i] = withObstacles[i].withObstacles(Collections.emptyList());
+        }
+    }
+
+    @Benchmark
+    public int[] aStarWithObstacles() {
+        return Pathfinding.aStarPathfinding(withObstacles[next++ & (MAZES - 1)]);
+    }
+
+    @Benchmark
+    public int[] aStarWithoutObstacles() {
+        return Pathfinding.aStarPathfinding(withoutObstacles[next++ & (MAZES - 1)]);
+    }
+}
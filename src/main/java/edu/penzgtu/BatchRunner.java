@@ -0,0 +1,355 @@
+package edu.penzgtu;
+
+import edu.penzgtu.evolution.*;
+import edu.penzgtu.metrics.Metrics;
+import edu.penzgtu.model.Maze;
+import edu.penzgtu.model.MazeConfig;
+import edu.penzgtu.remote.LocalWorkers;
+import edu.penzgtu.remote.RemoteEvaluator;
+import edu.penzgtu.util.MazeGenerator;
+import edu.penzgtu.util.MazePool;
+import edu.penzgtu.util.MazePrefetcher;
+import edu.penzgtu.util.RandomSource;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+// Headless entry point: runs the evaluate/evolve loop without Swing and streams one record per generation.
+public class BatchRunner {
+    private static final int WORKER_IN_FLIGHT = 4;
+    private static final String USAGE = String.join(System.lineSeparator(),
+            "Usage: BatchRunner [options]",
+            "  --algorithm ga|es|sa|island  algorithm to run (default ga)",
+            "  --population N           population size for ga and island (default 50)",
+            "  --generations N          number of generations (default 100)",
+            "  --seed N                 run seed (default: current time)",
+            "  --threads N              evaluation threads (default: available processors)",
+            "  --islands N              sub-populations of the island model (default 4)",
+            "  --migration-interval N   generations between island migrations (default 10)",
+            "  --migrants N             individuals each island sends per migration (default 2)",
+            "  --pool-size N            mazes per evaluation pool (default 8)",
+            "  --pool-rotation N        mazes replaced per generation (default 2)",
+            "  --prefetch N             maze producer threads, 0 to generate inline (default 0)",
+            "  --generator rejection|repair  maze generation mode (default rejection)",
+            "  --max-steps N            agent step budget per maze (default 200)",
+            "  --sensors S,...          agent sensors from front, right, left, obstacle, goal (default front,right);",
+            "                           other sets than the default are scored locally without the genome cache",
+            "  --workers HOST:PORT,...  score populations on EvaluationWorker processes",
+            "  --spawn-workers N        start N local worker processes and score populations on them",
+            "  --worker-batch N         genomes per worker batch (default 64)",
+            "  --worker-timeout N       seconds a worker may stay silent with batches pending (default 60)",
+            "  --cache off|lazy|exhaustive  genome fitness cache mode (default lazy); exhaustive scores all 256",
+            "                           genomes whenever the pool changes, far more than lazy unless",
+            "                           --pool-rotation is 0",
+            "  --checkpoint FILE        write checkpoints to FILE, %d in the name is replaced by the generation",
+            "  --checkpoint-every N     generations between checkpoints (default 10)",
+            "  --resume FILE            continue from a checkpoint; its algorithm, seed, population, pool and",
+            "                           maze settings replace the command line values",
+            "  --metrics FILE           write a performance summary to FILE at the end, - for stderr",
+            "  --format csv|jsonl       output format (default csv)",
+            "  --output FILE            output file (default: stdout)");
+
+    private String algorithm = "ga";
+    private int populationSize = 50;
+    private int generations = 100;
+    private long seed = System.nanoTime();
+    private int threads = Runtime.getRuntime().availableProcessors();
+    private int islands = 4;
+    private int migrationInterval = 10;
+    private int migrants = 2;
+    private int poolSize = 8;
+    private int poolRotation = 2;
+    private int prefetchThreads;
+    private MazeGenerator.Mode generatorMode = MazeGenerator.Mode.REJECTION;
+    private int maxSteps = MazeConfig.DEFAULT_MAX_STEPS;
+    private SensorSet sensors = SensorSet.DEFAULT;
+    private String workers;
+    private int spawnWorkers;
+    private int workerBatch = 64;
+    private int workerTimeout = (int) (RemoteEvaluator.DEFAULT_TIMEOUT_MILLIS / 1000);
+    private String cacheMode = "lazy";
+    private String checkpointPath;
+    private int checkpointEvery = 10;
+    private String resumePath;
+    private String metricsOutput;
+    private String format = "csv";
+    private String output;
+    private boolean help;
+
+    public static void main(String[] args) throws IOException {
+        BatchRunner runner = new BatchRunner();
+        try {
+            runner.parse(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(USAGE);
+            System.exit(2);
+        }
+        if (runner.help) {
+            System.out.println(USAGE);
+            return;
+        }
+        runner.run();
+    }
+
+    private void parse(String[] args) {
+        Set<String> given = new HashSet<>();
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            if (arg.equals("--help") || arg.equals("-h")) {
+                help = true;
+                return;
+            }
+            if (i + 1 >= args.length) throw new IllegalArgumentException("Missing value for " + arg);
+            String value = args[++i];
+            given.add(arg);
+            switch (arg) {
+                case "--algorithm": algorithm = value.toLowerCase(Locale.ROOT); break;
+                case "--population": populationSize = parseInt(arg, value, 1); break;
+                case "--generations": generations = parseInt(arg, value, 1); break;
+                case "--seed": seed = parseLong(arg, value); break;
+                case "--threads": threads = parseInt(arg, value, 1); break;
+                case "--islands": islands = parseInt(arg, value, 1); break;
+                case "--migration-interval": migrationInterval = parseInt(arg, value, 1); break;
+                case "--migrants": migrants = parseInt(arg, value, 0); break;
+                case "--pool-size": poolSize = parseInt(arg, value, 1); break;
+                case "--pool-rotation": poolRotation = parseInt(arg, value, 0); break;
+                case "--prefetch": prefetchThreads = parseInt(arg, value, 0); break;
+                case "--generator": generatorMode = parseMode(value); break;
+                case "--max-steps": maxSteps = parseInt(arg, value, 1); break;
+                case "--sensors": sensors = SensorSet.parse(value); break;
+                case "--workers": workers = value; break;
+                case "--spawn-workers": spawnWorkers = parseInt(arg, value, 0); break;
+                case "--worker-batch": workerBatch = parseInt(arg, value, 1); break;
+                case "--worker-timeout": workerTimeout = parseInt(arg, value, 1); break;
+                case "--cache": cacheMode = value.toLowerCase(Locale.ROOT); break;
+                case "--checkpoint": checkpointPath = value; break;
+                case "--checkpoint-every": checkpointEvery = parseInt(arg, value, 1); break;
+                case "--resume": resumePath = value; break;
+                case "--metrics": metricsOutput = value; break;
+                case "--format": format = value.toLowerCase(Locale.ROOT); break;
+                case "--output": output = value; break;
+                default: throw new IllegalArgumentException("Unknown option: " + arg);
+            }
+        }
+        if (!format.equals("csv") && !format.equals("jsonl")) throw new IllegalArgumentException("Unknown format: " + format);
+        if (!cacheMode.equals("off") && !cacheMode.equals("lazy") && !cacheMode.equals("exhaustive")) {
+            throw new IllegalArgumentException("Unknown cache mode: " + cacheMode);
+        }
+        if (!algorithm.equals("ga") && !algorithm.equals("es") && !algorithm.equals("sa") && !algorithm.equals("island")) {
+            throw new IllegalArgumentException("Unknown algorithm: " + algorithm);
+        }
+        if (workers != null && spawnWorkers > 0) throw new IllegalArgumentException("--workers and --spawn-workers are exclusive");
+        if ((workers != null || spawnWorkers > 0) && sensors != SensorSet.DEFAULT) {
+            throw new IllegalArgumentException("Workers only score the default sensors, not " + sensors);
+        }
+        // A resumed run takes these from the checkpoint.
+        if (resumePath != null) return;
+        if (poolRotation > poolSize) {
+            throw new IllegalArgumentException("--pool-rotation " + poolRotation + " exceeds --pool-size " + poolSize);
+        }
+        if (algorithm.equals("island") && populationSize < islands) {
+            throw new IllegalArgumentException("--population " + populationSize + " is smaller than --islands " + islands);
+        }
+        // Options the chosen algorithm has no use for are reported, since silently ignoring them
+        // hides mistakes such as sizing an es run with --population.
+        List<String> unused = new ArrayList<>();
+        if (!algorithm.equals("ga") && !algorithm.equals("island") && given.contains("--population")) unused.add("--population");
+        if (!algorithm.equals("island")) {
+            for (String option : new String[]{"--islands", "--migration-interval", "--migrants"}) {
+                if (given.contains(option)) unused.add(option);
+            }
+        }
+        if (!unused.isEmpty()) {
+            throw new IllegalArgumentException(String.join(", ", unused) + " does not apply to --algorithm " + algorithm);
+        }
+    }
+
+    private static int parseInt(String option, String value, int min) {
+        int n;
+        try {
+            n = Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(option + " expects a number: " + value);
+        }
+        if (n < min) throw new IllegalArgumentException(option + " must be at least " + min + ": " + value);
+        return n;
+    }
+
+    private static long parseLong(String option, String value) {
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(option + " expects a number: " + value);
+        }
+    }
+
+    private static List<InetSocketAddress> parseAddresses(String value) {
+        List<InetSocketAddress> addresses = new ArrayList<>();
+        for (String part : value.split(",")) {
+            int colon = part.lastIndexOf(':');
+            if (colon < 0) {
+                addresses.add(new InetSocketAddress(InetAddress.getLoopbackAddress(), parseInt("--workers", part.trim(), 1)));
+            } else {
+                addresses.add(new InetSocketAddress(part.substring(0, colon).trim(), parseInt("--workers", part.substring(colon + 1).trim(), 1)));
+            }
+        }
+        return addresses;
+    }
+
+    private static MazeGenerator.Mode parseMode(String value) {
+        switch (value.toLowerCase(Locale.ROOT)) {
+            case "rejection": return MazeGenerator.Mode.REJECTION;
+            case "repair": return MazeGenerator.Mode.REPAIR;
+            default: throw new IllegalArgumentException("Unknown generator mode: " + value);
+        }
+    }
+
+    private EvolutionaryAlgorithm createAlgorithm(PopulationEvaluator evaluator, RandomSource random) {
+        switch (algorithm) {
+            case "ga": return new GeneticAlgorithm(evaluator, random, sensors);
+            case "es": return new EvolutionStrategy(evaluator, random, sensors);
+            case "island": return new IslandGeneticAlgorithm(evaluator, random, sensors, islands, migrationInterval, migrants);
+            default: return new SimulatedAnnealing(evaluator, random, sensors);
+        }
+    }
+
+    private void run() throws IOException {
+        Metrics.register();
+        Checkpoint resume = resumePath == null ? null : Checkpoint.read(Paths.get(resumePath));
+        if (resume != null) {
+            algorithm = resume.getAlgorithm();
+            seed = resume.getSeed();
+            generatorMode = resume.getGeneratorMode();
+            populationSize = resume.getState().getPopulationSize();
+            poolSize = resume.getPool().getMazes().size();
+            poolRotation = resume.getPool().getRotation();
+            maxSteps = resume.getMazeConfig().getMaxSteps();
+            sensors = resume.getState().getSensors();
+        }
+        RandomSource random = new RandomSource(seed);
+        GenomeFitnessCache cache = cacheMode.equals("off") || sensors != SensorSet.DEFAULT ? null : new GenomeFitnessCache(cacheMode.equals("exhaustive"));
+        LocalWorkers localWorkers = spawnWorkers > 0 ? new LocalWorkers(spawnWorkers, Math.max(1, threads)) : null;
+        RemoteEvaluator remote = null;
+        if (localWorkers != null) remote = new RemoteEvaluator(localWorkers.getAddresses(), workerBatch, WORKER_IN_FLIGHT, workerTimeout * 1000L);
+        else if (workers != null) remote = new RemoteEvaluator(parseAddresses(workers), workerBatch, WORKER_IN_FLIGHT, workerTimeout * 1000L);
+        PopulationEvaluator evaluator = new PopulationEvaluator(Math.max(1, threads), cache, remote);
+        EvolutionaryAlgorithm ea = null;
+        MazePrefetcher prefetcher = null;
+        CheckpointWriter checkpoints = checkpointPath == null ? null : new CheckpointWriter(checkpointPath);
+        Writer sink = output == null
+                ? new OutputStreamWriter(System.out, StandardCharsets.UTF_8)
+                : new OutputStreamWriter(new FileOutputStream(output), StandardCharsets.UTF_8);
+        try (PrintWriter out = new PrintWriter(new BufferedWriter(sink))) {
+            MazeConfig config = resume != null ? resume.getMazeConfig() : MazeConfig.DEFAULT.withMaxSteps(maxSteps);
+            MazeGenerator generator = new MazeGenerator(config, generatorMode);
+            if (prefetchThreads > 0) {
+                long first = resume != null ? resume.getPool().getGenerated() : 0;
+                prefetcher = new MazePrefetcher(generator, new RandomSource(seed), "maze-pool", first,
+                        Math.max(poolSize, 2 * prefetchThreads), prefetchThreads);
+            }
+            MazePool mazes;
+            if (resume != null) {
+                mazes = prefetcher != null
+                        ? MazePool.restore(prefetcher, resume.getPool())
+                        : MazePool.restore(generator, seed, resume.getPool());
+            } else {
+                mazes = prefetcher != null
+                        ? new MazePool(prefetcher, poolSize, poolRotation)
+                        : new MazePool(generator, poolSize, poolRotation, seed);
+            }
+            ea = createAlgorithm(evaluator, random);
+            ea.initialize(populationSize);
+            if (resume != null) ea.restoreState(resume.getState());
+            if (format.equals("csv")) out.println("generation,best_fitness,mean_fitness,success_rate,evaluate_ms,evolve_ms");
+
+            int first = resume != null ? resume.getCompletedGenerations() : 0;
+            for (int generation = first; generation < generations; generation++) {
+                long t0 = System.nanoTime();
+                ea.evaluate(mazes);
+                long t1 = System.nanoTime();
+                Individual best = ea.getBest();
+                double bestFitness = best.getFitness();
+                double meanFitness = ea.getMeanFitness();
+                double successRate = successRate(best.getStrategy(), mazes);
+                long t2 = System.nanoTime();
+                ea.evolve();
+                long t3 = System.nanoTime();
+                Metrics.recordGeneration(generation, t1 - t0, t3 - t2);
+                mazes.nextGeneration();
+                write(out, generation, bestFitness, meanFitness, successRate, (t1 - t0) / 1e6, (t3 - t2) / 1e6);
+                if (checkpoints != null && (generation + 1) % checkpointEvery == 0) {
+                    checkpoints.submit(new Checkpoint(algorithm, seed, generatorMode, generation + 1, ea.saveState(), mazes.getState()));
+                }
+            }
+            if (checkpoints != null) {
+                checkpoints.close();
+                System.err.printf(Locale.ROOT, "checkpoints: %d written, %d superseded, %.3f ms average write%n",
+                        checkpoints.getWrittenCount(), checkpoints.getSupersededCount(), checkpoints.getAverageWriteMillis());
+            }
+            System.err.printf(Locale.ROOT, "maze generator: %d valid mazes, %.2f attempts and %.2f path checks per valid maze, "
+                            + "%d repairs, %d obstacle placements%n",
+                    generator.getValidMazeCount(), generator.getAttemptsPerValidMaze(), generator.getPathChecksPerValidMaze(),
+                    generator.getRepairCount(), generator.getObstaclePlacementCount());
+            if (prefetcher != null) {
+                System.err.printf(Locale.ROOT, "maze prefetch: %d produced, %.2f ms per maze, %d ready, %.3f ms average wait%n",
+                        prefetcher.getProducedCount(), prefetcher.getAverageProductionMillis(),
+                        prefetcher.getQueueDepth(), prefetcher.getAverageWaitMillis());
+            }
+            if (remote != null) {
+                System.err.printf(Locale.ROOT, "workers: %d of %d alive, %d batches, %d re-dispatched, %d scored locally%n",
+                        remote.getLiveWorkerCount(), remote.getWorkerCount(), remote.getBatchCount(), remote.getRedispatchCount(), remote.getLocalBatchCount());
+            }
+            if (cache != null) {
+                System.err.printf(Locale.ROOT, "genome cache: %d hits, %d misses, hit rate %.4f%n",
+                        cache.getHits(), cache.getMisses(), cache.getHitRate());
+            }
+            if (metricsOutput != null) writeMetrics();
+        } finally {
+            if (ea instanceof IslandGeneticAlgorithm) ((IslandGeneticAlgorithm) ea).shutdown();
+            if (prefetcher != null) prefetcher.shutdown();
+            evaluator.shutdown();
+            if (remote != null) remote.close();
+            if (localWorkers != null) localWorkers.close();
+        }
+    }
+
+    private void writeMetrics() throws IOException {
+        String summary = Metrics.INSTANCE.summary();
+        if (metricsOutput.equals("-")) {
+            System.err.println(summary);
+        } else {
+            try (PrintWriter out = new PrintWriter(new OutputStreamWriter(new FileOutputStream(metricsOutput), StandardCharsets.UTF_8))) {
+                out.println(summary);
+            }
+        }
+    }
+
+    // Share of the current pool's mazes that the best strategy solves.
+    private static double successRate(Strategy strategy, MazePool mazes) {
+        int solved = 0;
+        for (Maze maze : mazes.getMazes()) {
+            if (FitnessEvaluator.solves(strategy, maze)) solved++;
+        }
+        return (double) solved / mazes.size();
+    }
+
+    private void write(PrintWriter out, int generation, double best, double mean, double success,
+                       double evaluateMs, double evolveMs) {
+        if (format.equals("csv")) {
+            out.printf(Locale.ROOT, "%d,%.3f,%.3f,%.4f,%.3f,%.3f%n", generation, best, mean, success, evaluateMs, evolveMs);
+        } else {
+            out.printf(Locale.ROOT, "{\"generation\":%d,\"bestFitness\":%.3f,\"meanFitness\":%.3f,\"successRate\":%.4f,"
+                    + "\"evaluateMs\":%.3f,\"evolveMs\":%.3f}%n", generation, best, mean, success, evaluateMs, evolveMs);
+        }
+        out.flush();
+    }
+}
@@ -1,46 +1,73 @@
 package edu.penzgtu;
 
 import edu.penzgtu.evolution.*;
-import edu.penzgtu.model.Obstacle;
+import edu.penzgtu.metrics.Metrics;
+import edu.penzgtu.model.Maze;
 import edu.penzgtu.util.MazeGenerator;
+import edu.penzgtu.util.MazePool;
+import edu.penzgtu.util.MazePrefetcher;
+import edu.penzgtu.util.RandomSource;
+import edu.penzgtu.view.FitnessChart;
 import edu.penzgtu.view.MazePanel;
-import org.jfree.chart.ChartFactory;
-import org.jfree.chart.ChartPanel;
-import org.jfree.chart.JFreeChart;
-import org.jfree.chart.plot.PlotOrientation;
-import org.jfree.data.xy.XYSeries;
-import org.jfree.data.xy.XYSeriesCollection;
 
 import javax.swing.*;
 import java.awt.*;
 import java.awt.event.ActionEvent;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 public class MazeGame {
     private static final int POP_SIZE = 50;
+    private static final int POOL_SIZE = 8;
+    private static final int POOL_ROTATION = 2;
+    private static final int UI_PREFETCH_DEPTH = 2;
 
     private JFrame frame;
     private MazeGenerator generator;
+    private MazePool mazePool;
+    // Displayed mazes and pool mazes are generated ahead of time so that neither waits on the generator.
+    private MazePrefetcher mazePrefetcher;
+    private MazePrefetcher poolPrefetcher;
+    private final PopulationEvaluator evaluator =
+            new PopulationEvaluator(Runtime.getRuntime().availableProcessors(), new GenomeFitnessCache(false));
     private MazePanel panel;
     private EvolutionaryAlgorithm ea;
     private Strategy bestStrategy;
     private int generation;
-    private char[][] currentMaze;
-    private List<Obstacle> currentObstacles;
+    private Maze currentMaze;
     private Timer uiTimer;
-    private boolean isFirstRun = true;
+
+    // Maze generation and evolution run here; the EDT only receives finished results.
+    private final ExecutorService worker = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "evolution-worker");
+        t.setDaemon(true);
+        return t;
+    });
+    private final AtomicBoolean cancelRequested = new AtomicBoolean();
+    private boolean busy;
+    // Finished generations wait here for the EDT, which drains them all in one event, so a fast
+    // auto-run keeps at most one update in the event queue.
+    private final ConcurrentLinkedQueue<GenerationResult> finished = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean drainPending = new AtomicBoolean();
 
     private JComboBox<String> algoBox;
+    private JButton initButton;
+    private JButton nextGenButton;
+    private JButton newMazeButton;
+    private JButton autoRunButton;
+    private JButton cancelButton;
+    private JSpinner autoRunSpinner;
+    private JProgressBar progressBar;
     private JLabel genLabel;
     private JLabel fitnessLabel;
     private JLabel stepsLabel;
     private JLabel successLabel;
-    private JPanel chartPanelContainer;
-    private final List<Double> fitnessHistory = new ArrayList<>();
-    private final List<Integer> successHistory = new ArrayList<>();
+    private FitnessChart chart;
 
     public static void main(String[] args) {
+        Metrics.register();
         SwingUtilities.invokeLater(() -> new MazeGame().createAndShowGUI());
     }
 
@@ -50,21 +77,23 @@ public class MazeGame {
         frame.setLayout(new BorderLayout());
 
         generator = new MazeGenerator();
-        currentMaze = generator.generateValidMaze();
-        currentObstacles = generator.getObstacles();
+        mazePrefetcher = new MazePrefetcher(generator, new RandomSource(System.nanoTime()), "ui-maze", UI_PREFETCH_DEPTH, 1);
+        currentMaze = mazePrefetcher.take();
         panel = new MazePanel(currentMaze);
-        panel.setObstacles(currentObstacles);
         frame.add(panel, BorderLayout.CENTER);
 
-        chartPanelContainer = new JPanel();
-        chartPanelContainer.setLayout(new BorderLayout());
-        frame.add(chartPanelContainer, BorderLayout.EAST);
+        chart = new FitnessChart();
+        frame.add(chart, BorderLayout.EAST);
 
         JPanel control = new JPanel();
-        algoBox = new JComboBox<>(new String[]{"Генетический алгоритм", "Эволюционная стратегия", "Метод отжига"});
-        JButton initButton = new JButton("Инициализировать");
-        JButton nextGenButton = new JButton("Следующее поколение");
-        JButton newMazeButton = new JButton("Новый лабиринт");
+        algoBox = new JComboBox<>(new String[]{"Генетический алгоритм", "Эволюционная стратегия", "Метод отжига", "Островной генетический алгоритм"});
+        initButton = new JButton("Инициализировать");
+        nextGenButton = new JButton("Следующее поколение");
+        autoRunSpinner = new JSpinner(new SpinnerNumberModel(10, 1, 100_000, 1));
+        autoRunButton = new JButton("Авто-прогон");
+        cancelButton = new JButton("Отмена");
+        cancelButton.setEnabled(false);
+        newMazeButton = new JButton("Новый лабиринт");
         JButton stepButton = new JButton("Шаг");
         JButton runPauseButton = new JButton("Запуск/Пауза");
         JButton instantRunButton = new JButton("Мгновенное прохождение");
@@ -72,6 +101,9 @@ public class MazeGame {
         control.add(algoBox);
         control.add(initButton);
         control.add(nextGenButton);
+        control.add(autoRunSpinner);
+        control.add(autoRunButton);
+        control.add(cancelButton);
         control.add(newMazeButton);
         control.add(stepButton);
         control.add(runPauseButton);
@@ -87,85 +119,189 @@ public class MazeGame {
         status.add(fitnessLabel);
         status.add(stepsLabel);
         status.add(successLabel);
+        progressBar = new JProgressBar();
+        progressBar.setStringPainted(true);
+        progressBar.setVisible(false);
+        status.add(progressBar);
         frame.add(status, BorderLayout.SOUTH);
 
         initButton.addActionListener(this::onInitialize);
         nextGenButton.addActionListener(this::onNextGeneration);
+        autoRunButton.addActionListener(e -> runGenerations((Integer) autoRunSpinner.getValue()));
+        cancelButton.addActionListener(e -> cancelRequested.set(true));
         newMazeButton.addActionListener(e -> onNewMaze());
         stepButton.addActionListener(e -> onStep());
         runPauseButton.addActionListener(e -> onRunPause());
         instantRunButton.addActionListener(e -> onInstantRun());
 
-        onNewMaze();
-
         frame.pack();
         frame.setVisible(true);
     }
 
     private void onInitialize(ActionEvent e) {
-        switch (algoBox.getSelectedIndex()) {
-            case 0: ea = new GeneticAlgorithm(); break;
-            case 1: ea = new EvolutionStrategy(); break;
-            default: ea = new SimulatedAnnealing();
-        }
-        ea.initialize(POP_SIZE);
-        generation = 0;
-        bestStrategy = null;
-        genLabel.setText("Поколение: 0");
-        fitnessLabel.setText("Фитнес: N/A");
-        stepsLabel.setText("Шагов: 0");
-        successLabel.setText("Статус: Ожидание");
-        panel.resetSimulation();
-        resetChart();
+        if (busy) return;
+        stopUiTimer();
+        RandomSource runRandom = new RandomSource(System.nanoTime());
+        int algorithmIndex = algoBox.getSelectedIndex();
+        runInBackground("Инициализация...", false, () -> {
+            EvolutionaryAlgorithm algorithm = createAlgorithm(algorithmIndex, runRandom);
+            algorithm.initialize(POP_SIZE);
+            MazePrefetcher prefetcher = new MazePrefetcher(generator, runRandom, "maze-pool", POOL_SIZE, 1);
+            MazePool pool = new MazePool(prefetcher, POOL_SIZE, POOL_ROTATION);
+            SwingUtilities.invokeLater(() -> {
+                if (ea instanceof IslandGeneticAlgorithm) ((IslandGeneticAlgorithm) ea).shutdown();
+                if (poolPrefetcher != null) poolPrefetcher.shutdown();
+                poolPrefetcher = prefetcher;
+                mazePrefetcher.shutdown();
+                mazePrefetcher = new MazePrefetcher(generator, runRandom, "ui-maze", UI_PREFETCH_DEPTH, 1);
+                ea = algorithm;
+                mazePool = pool;
+                generation = 0;
+                bestStrategy = null;
+                genLabel.setText("Поколение: 0");
+                fitnessLabel.setText("Фитнес: N/A");
+                stepsLabel.setText("Шагов: 0");
+                successLabel.setText("Статус: Ожидание");
+                panel.resetSimulation();
+                chart.clear();
+            });
+        });
     }
 
-    private void resetChart() {
-        fitnessHistory.clear();
-        successHistory.clear();
-        updateChart();
+    private EvolutionaryAlgorithm createAlgorithm(int index, RandomSource runRandom) {
+        switch (index) {
+            case 0: return new GeneticAlgorithm(evaluator, runRandom);
+            case 1: return new EvolutionStrategy(evaluator, runRandom);
+            case 3: return new IslandGeneticAlgorithm(evaluator, runRandom, 4, 10, 2);
+            default: return new SimulatedAnnealing(evaluator, runRandom);
+        }
     }
 
     private void onNextGeneration(ActionEvent e) {
+        runGenerations(1);
+    }
+
+    // Runs `count` generations on the worker. Finished generations are queued for the EDT, which
+    // charts each of them and shows the latest; the success of intermediate generations comes from scoring the best strategy on the
+    // displayed maze, while the last one is decided by playback as before.
+    private void runGenerations(int count) {
         if (ea == null) {
             JOptionPane.showMessageDialog(frame, "Сначала инициализируйте алгоритм");
             return;
         }
+        if (busy) return;
         stopUiTimer();
-        ea.evaluate(generator);
-        bestStrategy = ea.getBest().getStrategy();
-        double fitness = ea.getBest().getFitness();
+        EvolutionaryAlgorithm algorithm = ea;
+        MazePool pool = mazePool;
+        Maze maze = currentMaze;
+        int firstGeneration = generation;
+        progressBar.setMaximum(count);
+        runInBackground("Эволюция...", true, () -> {
+            int completed = 0;
+            while (completed < count && !cancelRequested.get()) {
+                long t0 = System.nanoTime();
+                algorithm.evaluate(pool);
+                long t1 = System.nanoTime();
+                Strategy strategy = algorithm.getBest().getStrategy().copy();
+                double fitness = algorithm.getBest().getFitness();
+                boolean last = completed == count - 1;
+                boolean solved = !last && FitnessEvaluator.solves(strategy, maze);
+                long t2 = System.nanoTime();
+                algorithm.evolve();
+                Metrics.recordGeneration(firstGeneration + completed, t1 - t0, System.nanoTime() - t2);
+                pool.nextGeneration();
+                completed++;
+                finished.add(new GenerationResult(strategy, fitness, solved, completed));
+                if (drainPending.compareAndSet(false, true)) SwingUtilities.invokeLater(this::drainFinished);
+            }
+            if (completed > 0) SwingUtilities.invokeLater(this::startUiTimer);
+        });
+    }
 
-        panel.setMaze(currentMaze);
-        panel.setObstacles(currentObstacles);
+    // The flag is cleared before polling, so a result queued after the poll schedules a new drain.
+    private void drainFinished() {
+        drainPending.set(false);
+        GenerationResult last = null;
+        for (GenerationResult result; (result = finished.poll()) != null; last = result) {
+            chart.addPoint(result.fitness, result.solved);
+            generation++;
+        }
+        if (last == null) return;
+        bestStrategy = last.strategy;
         panel.resetSimulation();
         stepsLabel.setText("Шагов: 0");
-
-        fitnessHistory.add(fitness);
-        successHistory.add(0);
-
-        fitnessLabel.setText(String.format("Фитнес: %.2f", fitness));
-        updateChart();
-
-        ea.evolve();
-        generation++;
+        fitnessLabel.setText(String.format("Фитнес: %.2f", last.fitness));
         genLabel.setText("Поколение: " + generation);
         successLabel.setText("Статус: Ожидание");
+        progressBar.setValue(last.progress);
+        progressBar.setString(last.progress + " / " + progressBar.getMaximum());
+    }
 
-        startUiTimer();
+    private static final class GenerationResult {
+        final Strategy strategy;
+        final double fitness;
+        final boolean solved;
+        final int progress;
+
+        GenerationResult(Strategy strategy, double fitness, boolean solved, int progress) {
+            this.strategy = strategy;
+            this.fitness = fitness;
+            this.solved = solved;
+            this.progress = progress;
+        }
     }
 
     private void onNewMaze() {
+        if (busy) return;
         stopUiTimer();
-        currentMaze = generator.generateValidMaze();
-        currentObstacles = generator.getObstacles();
+        MazePrefetcher prefetcher = mazePrefetcher;
+        Maze ready = prefetcher.poll();
+        if (ready != null) {
+            showMaze(ready);
+            return;
+        }
+        runInBackground("Генерация лабиринта...", false, () -> {
+            Maze maze = prefetcher.take();
+            SwingUtilities.invokeLater(() -> showMaze(maze));
+        });
+    }
+
+    private void showMaze(Maze maze) {
+        currentMaze = maze;
         panel.setMaze(currentMaze);
-        panel.setObstacles(currentObstacles);
-        panel.resetSimulation();
         stepsLabel.setText("Шагов: 0");
         successLabel.setText("Статус: Ожидание");
-        fitnessHistory.clear();
-        successHistory.clear();
-        updateChart();
+        chart.clear();
+    }
+
+    private void runInBackground(String message, boolean cancellable, Runnable task) {
+        setBusy(true, message, cancellable);
+        cancelRequested.set(false);
+        worker.execute(() -> {
+            try {
+                task.run();
+            } catch (RuntimeException ex) {
+                SwingUtilities.invokeLater(() -> JOptionPane.showMessageDialog(frame, "Ошибка: " + ex.getMessage()));
+            } finally {
+                SwingUtilities.invokeLater(() -> setBusy(false, null, false));
+            }
+        });
+    }
+
+    private void setBusy(boolean busy, String message, boolean cancellable) {
+        this.busy = busy;
+        algoBox.setEnabled(!busy);
+        initButton.setEnabled(!busy);
+        nextGenButton.setEnabled(!busy);
+        autoRunButton.setEnabled(!busy);
+        newMazeButton.setEnabled(!busy);
+        cancelButton.setEnabled(busy && cancellable);
+        progressBar.setVisible(busy);
+        progressBar.setIndeterminate(busy && !cancellable);
+        if (busy) {
+            progressBar.setValue(0);
+            progressBar.setString(message);
+        }
     }
 
     private void onStep() {
@@ -216,7 +352,7 @@ public class MazeGame {
     private void startUiTimer() {
         if (uiTimer != null) uiTimer.stop();
         uiTimer = new Timer(100, ev -> {
-            if (panel.isDead() || panel.isGoalReached()) {
+            if (panel.isFinished()) {
                 stopUiTimer();
             } else {
                 panel.stepStrategy(bestStrategy);
@@ -245,60 +381,6 @@ public class MazeGame {
     }
 
     private void updateSuccessHistory() {
-        if (!successHistory.isEmpty()) {
-            successHistory.set(successHistory.size() - 1, panel.isGoalReached() ? 1 : 0);
-            updateChart();
-        }
-    }
-
-    private void updateChart() {
-        XYSeriesCollection dataset = getSeriesCollection();
-
-        JFreeChart chart = ChartFactory.createXYLineChart(
-                "Зависимость побед от фитнеса",
-                "Поколение",
-                "Фитнес",
-                dataset,
-                PlotOrientation.VERTICAL,
-                true,
-                true,
-                false
-        );
-
-        chart.getXYPlot().getRenderer().setSeriesPaint(0, Color.BLUE);
-        chart.getXYPlot().getRenderer().setSeriesPaint(1, Color.RED);
-
-        if (chartPanelContainer.getComponentCount() > 0) {
-            chartPanelContainer.removeAll();
-        }
-
-        ChartPanel chartPanel = new ChartPanel(chart);
-        chartPanel.setPreferredSize(new Dimension(500, 300));
-        chartPanelContainer.add(chartPanel, BorderLayout.CENTER);
-        chartPanelContainer.revalidate();
-        chartPanelContainer.repaint();
-
-        if (isFirstRun) {
-            frame.setSize(frame.getWidth() + 250, frame.getHeight());
-            isFirstRun = false;
-        }
-    }
-
-    private XYSeriesCollection getSeriesCollection() {
-        XYSeries fitnessSuccessSeries = new XYSeries("Фитнес - Победа");
-        XYSeries fitnessFailureSeries = new XYSeries("Фитнес - Поражение");
-
-        for (int i = 0; i < fitnessHistory.size(); i++) {
-            if (successHistory.get(i) == 1) {
-                fitnessSuccessSeries.add(i, fitnessHistory.get(i));
-            } else {
-                fitnessFailureSeries.add(i, fitnessHistory.get(i));
-            }
-        }
-
-        XYSeriesCollection dataset = new XYSeriesCollection();
-        dataset.addSeries(fitnessSuccessSeries);
-        dataset.addSeries(fitnessFailureSeries);
-        return dataset;
+        chart.setLastSuccess(panel.isGoalReached());
     }
-}
\ No newline at end of file
+}
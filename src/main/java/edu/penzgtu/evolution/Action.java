@@ -4,5 +4,7 @@ public enum Action {
     FORWARD,
     TURN_LEFT,
     TURN_RIGHT,
-    STOP
+    STOP;
+
+    public static final int COUNT = values().length;
 }
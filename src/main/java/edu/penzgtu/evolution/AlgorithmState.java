@@ -0,0 +1,104 @@
+package edu.penzgtu.evolution;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// An algorithm between generations: the population's action tables with their fitness, the
+// generation counter that seeds the next evolve(), and algorithm-specific parameters such as the
+// annealing temperature. Random streams are derived from the run seed and the generation counter,
+// so these values are the whole random state.
+public final class AlgorithmState {
+    private final int generation;
+    private final int populationSize;
+    private final SensorSet sensors;
+    private final byte[] tables;
+    private final double[] fitness;
+    private final double[] parameters;
+
+    // `tables` holds the individuals' action tables one after another, getTableSize() bytes each.
+    public AlgorithmState(int generation, int populationSize, SensorSet sensors, byte[] tables, double[] fitness,
+                          double[] parameters) {
+        if (tables.length != (long) fitness.length * sensors.getTableSize()) {
+            throw new IllegalArgumentException("Expected " + fitness.length + " tables of " + sensors.getTableSize()
+                    + " actions, got " + tables.length + " bytes");
+        }
+        this.generation = generation;
+        this.populationSize = populationSize;
+        this.sensors = sensors;
+        this.tables = tables.clone();
+        this.fitness = fitness.clone();
+        this.parameters = parameters.clone();
+    }
+
+    static AlgorithmState of(int generation, int populationSize, SensorSet sensors, List<Individual> population,
+                             double... parameters) {
+        int size = sensors.getTableSize();
+        byte[] tables = new byte[population.size() * size];
+        double[] fitness = new double[population.size()];
+        for (int i = 0; i < fitness.length; i++) {
+            Individual ind = population.get(i);
+            if (ind.getStrategy().getSensors() != sensors) {
+                throw new IllegalArgumentException("Individual " + i + " reads " + ind.getStrategy().getSensors() + ", not " + sensors);
+            }
+            System.arraycopy(ind.getStrategy().getTable(), 0, tables, i * size, size);
+            fitness[i] = ind.getFitness();
+        }
+        return new AlgorithmState(generation, populationSize, sensors, tables, fitness, parameters);
+    }
+
+    // Individuals [from, to) with no parameters, e.g. one island's share of a combined state.
+    AlgorithmState slice(int from, int to) {
+        int size = sensors.getTableSize();
+        return new AlgorithmState(generation, to - from, sensors, Arrays.copyOfRange(tables, from * size, to * size),
+                Arrays.copyOfRange(fitness, from, to), new double[0]);
+    }
+
+    // States of consecutive parts of one population, e.g. the islands', joined in order.
+    static AlgorithmState concat(int generation, int populationSize, AlgorithmState[] parts, double... parameters) {
+        SensorSet sensors = parts[0].sensors;
+        int count = 0;
+        for (AlgorithmState part : parts) count += part.size();
+        byte[] tables = new byte[count * sensors.getTableSize()];
+        double[] fitness = new double[count];
+        int at = 0;
+        for (AlgorithmState part : parts) {
+            if (part.sensors != sensors) throw new IllegalArgumentException("Part reads " + part.sensors + ", not " + sensors);
+            System.arraycopy(part.tables, 0, tables, at * sensors.getTableSize(), part.tables.length);
+            System.arraycopy(part.fitness, 0, fitness, at, part.fitness.length);
+            at += part.size();
+        }
+        return new AlgorithmState(generation, populationSize, sensors, tables, fitness, parameters);
+    }
+
+    List<Individual> toPopulation() {
+        int size = sensors.getTableSize();
+        List<Individual> population = new ArrayList<>(fitness.length);
+        for (int i = 0; i < fitness.length; i++) {
+            Individual ind = new Individual(new Strategy(sensors, tables, i * size));
+            ind.setFitness(fitness[i]);
+            population.add(ind);
+        }
+        return population;
+    }
+
+    double parameter(int i) {
+        if (i >= parameters.length) throw new IllegalArgumentException("State has " + parameters.length + " parameters, expected more than " + i);
+        return parameters[i];
+    }
+
+    public int getGeneration() { return generation; }
+    public int getPopulationSize() { return populationSize; }
+    public SensorSet getSensors() { return sensors; }
+    public int size() { return fitness.length; }
+    public byte[] getTables() { return tables.clone(); }
+    public double[] getFitness() { return fitness.clone(); }
+    public double[] getParameters() { return parameters.clone(); }
+
+    @Override
+    public String toString() {
+        return "generation=" + generation + " population=" + populationSize + " individuals=" + fitness.length
+                + " sensors=" + sensors
+                + " parameters=" + Arrays.toString(parameters);
+    }
+}
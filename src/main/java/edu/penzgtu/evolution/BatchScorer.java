@@ -0,0 +1,11 @@
+package edu.penzgtu.evolution;
+
+import edu.penzgtu.model.Maze;
+
+import java.util.List;
+
+// Scores packed genome ids on a maze set somewhere other than the calling thread, e.g. in worker
+// processes. Results must equal FitnessEvaluator.evaluate(genomes, count, mazes).
+public interface BatchScorer {
+    double[] score(byte[] genomes, int count, List<Maze> mazes);
+}
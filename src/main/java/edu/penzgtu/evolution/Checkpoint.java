@@ -0,0 +1,149 @@
+package edu.penzgtu.evolution;
+
+import edu.penzgtu.model.Maze;
+import edu.penzgtu.model.MazeConfig;
+import edu.penzgtu.util.MazeCorpus;
+import edu.penzgtu.util.MazeGenerator;
+import edu.penzgtu.util.MazePool;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+// Everything needed to continue a run after `completedGenerations` generations: the run settings
+// that shape later generations, the algorithm state and the maze pool.
+//
+// File layout (big-endian), followed by a CRC32 of all preceding bytes:
+//   magic, version (ints), algorithm name (byte length + ASCII), seed (long), completed
+//   generations (int), generator mode (byte)
+//   algorithm: generation, population size, individual count, parameter count, sensor mask (ints),
+//   action tables (individual count * table size bytes), fitness values, parameters (doubles)
+//   pool: rotation, oldest (ints), generated, version (longs), maze config (MazeCorpus header
+//   fields), maze count (int), mazes as MazeCorpus records with a path length of -1
+public final class Checkpoint {
+    public static final int MAGIC = 0x4d5a4b31; // "MZK1"
+    public static final int VERSION = 1;
+
+    private final String algorithm;
+    private final long seed;
+    private final MazeGenerator.Mode generatorMode;
+    private final int completedGenerations;
+    private final AlgorithmState state;
+    private final MazePool.State pool;
+
+    public Checkpoint(String algorithm, long seed, MazeGenerator.Mode generatorMode, int completedGenerations,
+                      AlgorithmState state, MazePool.State pool) {
+        this.algorithm = algorithm;
+        this.seed = seed;
+        this.generatorMode = generatorMode;
+        this.completedGenerations = completedGenerations;
+        this.state = state;
+        this.pool = pool;
+    }
+
+    public String getAlgorithm() { return algorithm; }
+    public long getSeed() { return seed; }
+    public MazeGenerator.Mode getGeneratorMode() { return generatorMode; }
+    public int getCompletedGenerations() { return completedGenerations; }
+    public AlgorithmState getState() { return state; }
+    public MazePool.State getPool() { return pool; }
+    public MazeConfig getMazeConfig() { return pool.getMazes().get(0).getConfig(); }
+
+    // Writes to a temporary sibling first and moves it into place, so a crash mid-write leaves any
+    // earlier checkpoint at `path` intact.
+    public void write(Path path) throws IOException {
+        ByteBuffer buffer = encode();
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buffer.hasRemaining()) channel.write(buffer);
+            channel.force(false);
+        }
+        Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    public static Checkpoint read(Path path) throws IOException {
+        ByteBuffer in = ByteBuffer.wrap(Files.readAllBytes(path));
+        if (in.remaining() < 12 || in.getInt() != MAGIC) throw new IOException("Not a checkpoint file: " + path);
+        int version = in.getInt();
+        if (version != VERSION) throw new IOException("Unsupported checkpoint version: " + version);
+        CRC32 crc = new CRC32();
+        crc.update(in.array(), 0, in.limit() - 4);
+        if ((int) crc.getValue() != in.getInt(in.limit() - 4)) throw new IOException("Corrupt checkpoint: " + path);
+        try {
+            byte[] name = new byte[in.get() & 0xFF];
+            in.get(name);
+            long seed = in.getLong();
+            int completed = in.getInt();
+            MazeGenerator.Mode mode = MazeGenerator.Mode.values()[in.get()];
+
+            int generation = in.getInt(), populationSize = in.getInt();
+            double[] fitness = new double[in.getInt()];
+            double[] parameters = new double[in.getInt()];
+            SensorSet sensors = SensorSet.fromMask(in.getInt());
+            byte[] tables = new byte[fitness.length * sensors.getTableSize()];
+            in.get(tables);
+            for (int i = 0; i < fitness.length; i++) fitness[i] = in.getDouble();
+            for (int i = 0; i < parameters.length; i++) parameters[i] = in.getDouble();
+            AlgorithmState state = new AlgorithmState(generation, populationSize, sensors, tables, fitness, parameters);
+
+            int rotation = in.getInt(), oldest = in.getInt();
+            long generated = in.getLong(), poolVersion = in.getLong();
+            MazeConfig config = MazeCorpus.readConfig(in);
+            int recordSize = MazeCorpus.recordSize(config);
+            List<Maze> mazes = new ArrayList<>();
+            for (int i = in.getInt(); i > 0; i--) {
+                mazes.add(MazeCorpus.readRecord(in, in.position(), config));
+                in.position(in.position() + recordSize);
+            }
+            MazePool.State pool = new MazePool.State(mazes, rotation, oldest, generated, poolVersion);
+            return new Checkpoint(new String(name, StandardCharsets.US_ASCII), seed, mode, completed, state, pool);
+        } catch (RuntimeException e) {
+            throw new IOException("Malformed checkpoint: " + path, e);
+        }
+    }
+
+    private ByteBuffer encode() {
+        byte[] name = algorithm.getBytes(StandardCharsets.US_ASCII);
+        if (name.length > 255) throw new IllegalArgumentException("Algorithm name too long: " + algorithm);
+        MazeConfig config = getMazeConfig();
+        int recordSize = MazeCorpus.recordSize(config);
+        byte[] tables = state.getTables();
+        double[] fitness = state.getFitness(), parameters = state.getParameters();
+        List<Maze> mazes = pool.getMazes();
+        int size = 4 + 4 + 1 + name.length + 8 + 4 + 1
+                + 20 + tables.length + fitness.length * 8 + parameters.length * 8
+                + 24 + 10 * 4 + 4 + mazes.size() * recordSize
+                + 4;
+
+        ByteBuffer out = ByteBuffer.allocate(size);
+        out.putInt(MAGIC).putInt(VERSION);
+        out.put((byte) name.length).put(name);
+        out.putLong(seed).putInt(completedGenerations).put((byte) generatorMode.ordinal());
+
+        out.putInt(state.getGeneration()).putInt(state.getPopulationSize()).putInt(fitness.length).putInt(parameters.length);
+        out.putInt(state.getSensors().getMask());
+        out.put(tables);
+        for (double f : fitness) out.putDouble(f);
+        for (double p : parameters) out.putDouble(p);
+
+        out.putInt(pool.getRotation()).putInt(pool.getOldest()).putLong(pool.getGenerated()).putLong(pool.getVersion());
+        MazeCorpus.writeConfig(out, config);
+        out.putInt(mazes.size());
+        for (Maze maze : mazes) MazeCorpus.writeRecord(out, config, maze, -1);
+
+        CRC32 crc = new CRC32();
+        crc.update(out.array(), 0, out.position());
+        out.putInt((int) crc.getValue());
+        out.flip();
+        return out;
+    }
+}
@@ -0,0 +1,88 @@
+package edu.penzgtu.evolution;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+// Encodes and writes checkpoints on a background thread, so the generation loop only pays for
+// taking the snapshot. While a write is in progress at most one newer checkpoint waits; a still
+// newer one replaces it. A "%d" in the file name is replaced by the completed generation count,
+// which keeps every checkpoint instead of overwriting one file.
+public class CheckpointWriter implements Closeable {
+    private final String pattern;
+    private final ExecutorService writer;
+    private final AtomicReference<Checkpoint> pending = new AtomicReference<>();
+    private final LongAdder written = new LongAdder();
+    private final LongAdder superseded = new LongAdder();
+    private final LongAdder writeNanos = new LongAdder();
+    private volatile IOException failure;
+
+    public CheckpointWriter(String pattern) {
+        this.pattern = pattern;
+        this.writer = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "checkpoint-writer");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    public Path pathFor(int completedGenerations) {
+        return Paths.get(pattern.contains("%d") ? String.format(Locale.ROOT, pattern, completedGenerations) : pattern);
+    }
+
+    // Queues a checkpoint and returns immediately. Rethrows the failure of an earlier write.
+    public void submit(Checkpoint checkpoint) throws IOException {
+        checkFailure();
+        Checkpoint previous = pending.getAndSet(checkpoint);
+        if (previous == null) writer.execute(this::drain);
+        else superseded.increment();
+    }
+
+    private void drain() {
+        Checkpoint checkpoint = pending.getAndSet(null);
+        if (checkpoint == null || failure != null) return;
+        long start = System.nanoTime();
+        try {
+            checkpoint.write(pathFor(checkpoint.getCompletedGenerations()));
+            written.increment();
+        } catch (IOException e) {
+            failure = e;
+        } finally {
+            writeNanos.add(System.nanoTime() - start);
+        }
+    }
+
+    private void checkFailure() throws IOException {
+        IOException e = failure;
+        if (e != null) throw new IOException("Checkpoint write failed", e);
+    }
+
+    public long getWrittenCount() { return written.sum(); }
+
+    public long getSupersededCount() { return superseded.sum(); }
+
+    public double getAverageWriteMillis() {
+        long n = written.sum();
+        return n == 0 ? 0 : writeNanos.sum() / 1e6 / n;
+    }
+
+    // Waits for the queued checkpoint to be written.
+    @Override
+    public void close() throws IOException {
+        writer.shutdown();
+        try {
+            writer.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while writing the last checkpoint", e);
+        }
+        checkFailure();
+    }
+}
@@ -1,45 +1,97 @@
 package edu.penzgtu.evolution;
 
-import edu.penzgtu.util.MazeGenerator;
+import edu.penzgtu.util.MazePool;
+import edu.penzgtu.util.RandomSource;
 
 import java.util.*;
 
+// (mu, lambda) strategy on flat Populations: offspring are bred into a reused store and the best
+// mu are copied into the parents' next buffers, so evolve() allocates nothing per individual.
 public class EvolutionStrategy implements EvolutionaryAlgorithm {
-    private List<Individual> parents;
+    private Population parents;
+    private Population offspring;
     private final int mu = 5;
-    private final Random rand = new Random();
+    private final int lambda = 30;
+    private final int[] selected = new int[mu];
+    private final RandomSource random;
+    private final PopulationEvaluator evaluator;
+    private SensorSet sensors;
+    private MazePool mazes;
+    private int generation;
+
+    public EvolutionStrategy() {
+        this(PopulationEvaluator.sequential(), new RandomSource(System.nanoTime()));
+    }
+
+    public EvolutionStrategy(PopulationEvaluator evaluator, RandomSource random) {
+        this(evaluator, random, SensorSet.DEFAULT);
+    }
+
+    public EvolutionStrategy(PopulationEvaluator evaluator, RandomSource random, SensorSet sensors) {
+        this.evaluator = evaluator;
+        this.random = random;
+        this.sensors = sensors;
+    }
 
     @Override
     public void initialize(int populationSize) {
-        parents = new ArrayList<>();
-        for (int i = 0; i < mu; i++) parents.add(new Individual(new Strategy()));
+        generation = 0;
+        SplittableRandom rand = random.stream("es.init");
+        parents = new Population(sensors, mu);
+        offspring = new Population(sensors, lambda);
+        byte[] tables = parents.tables();
+        for (int i = 0; i < tables.length; i++) tables[i] = (byte) rand.nextInt(Action.COUNT);
     }
 
     @Override
-    public void evaluate(MazeGenerator generator) {
-        for (Individual ind : parents) {
-            ind.setFitness(FitnessEvaluator.evaluate(ind.getStrategy(), generator));
-        }
+    public void evaluate(MazePool mazes) {
+        this.mazes = mazes;
+        evaluator.evaluate(parents, mazes);
     }
 
     @Override
     public void evolve() {
-        List<Individual> offspring = new ArrayList<>();
-        int lambda = 30;
+        SplittableRandom rand = random.stream("es.evolve", generation++);
+        byte[] tables = offspring.tables();
         for (int i = 0; i < lambda; i++) {
-            Strategy base = parents.get(rand.nextInt(mu)).getStrategy().copy();
-            for (int j = 0; j < base.getGenes().length; j++) {
-                if (rand.nextDouble() < 0.1) base.getGenes()[j] = Action.values()[rand.nextInt(Action.values().length)];
+            offspring.copy(i, parents, rand.nextInt(mu));
+            int offset = offspring.offset(i);
+            for (int j = offset; j < offset + offspring.getTableSize(); j++) {
+                if (rand.nextDouble() < 0.1) tables[j] = (byte) rand.nextInt(Action.COUNT);
             }
-            offspring.add(new Individual(base));
         }
-        for (Individual child : offspring) child.setFitness(FitnessEvaluator.evaluate(child.getStrategy(), new MazeGenerator()));
-        offspring.sort(Comparator.comparingDouble(Individual::getFitness).reversed());
-        parents = new ArrayList<>(offspring.subList(0, mu));
+        evaluator.evaluate(offspring, mazes);
+        offspring.rank(selected, true);
+        for (int k = 0; k < mu; k++) parents.copyToNext(k, offspring, selected[k]);
+        parents.swap();
     }
 
     @Override
     public Individual getBest() {
-        return Collections.max(parents, Comparator.comparingDouble(Individual::getFitness));
+        return parents.get(parents.best());
+    }
+
+    @Override
+    public List<Individual> getPopulation() {
+        return Collections.unmodifiableList(parents.toList());
+    }
+
+    @Override
+    public double getMeanFitness() {
+        return parents.meanFitness();
+    }
+
+    @Override
+    public AlgorithmState saveState() {
+        return parents.toState(generation, mu);
+    }
+
+    @Override
+    public void restoreState(AlgorithmState state) {
+        if (state.size() != mu) throw new IllegalArgumentException("Expected " + mu + " parents, state has " + state.size());
+        generation = state.getGeneration();
+        sensors = state.getSensors();
+        parents = Population.of(state);
+        offspring = new Population(sensors, lambda);
     }
 }
@@ -1,10 +1,24 @@
 package edu.penzgtu.evolution;
 
-import edu.penzgtu.util.MazeGenerator;
+import edu.penzgtu.util.MazePool;
+
+import java.util.List;
 
 public interface EvolutionaryAlgorithm {
     void initialize(int populationSize);
-    void evaluate(MazeGenerator generator);
+    void evaluate(MazePool mazes);
     void evolve();
     Individual getBest();
+    List<Individual> getPopulation();
+
+    default double getMeanFitness() {
+        List<Individual> population = getPopulation();
+        double total = 0;
+        for (Individual ind : population) total += ind.getFitness();
+        return population.isEmpty() ? 0 : total / population.size();
+    }
+
+    // Captures everything evolve() depends on; restoreState() continues the run exactly from there.
+    AlgorithmState saveState();
+    void restoreState(AlgorithmState state);
 }
@@ -1,59 +1,127 @@
 package edu.penzgtu.evolution;
 
-import edu.penzgtu.model.Agent;
-import edu.penzgtu.util.MazeGenerator;
+import edu.penzgtu.metrics.Metrics;
+import edu.penzgtu.metrics.SimulationEvent;
+import edu.penzgtu.model.Maze;
+import edu.penzgtu.util.MazeCorpus;
+import edu.penzgtu.util.MazePool;
+
+import java.util.List;
 
 public class FitnessEvaluator {
-    public static double evaluate(Strategy strat, MazeGenerator generator) {
-        char[][] maze = generator.generateValidMaze();
-        Agent agent = new Agent(1, 1, 1); // start facing RIGHT
-        int maxSteps = 200;
-        int steps;
-        for (steps = 0; steps < maxSteps; steps++) {
-            if (maze[agent.y][agent.x] == 'G') break;
-            boolean frontFree = isFree(agent, maze, agent.direction);
-            boolean rightFree = isFree(agent, maze, (agent.direction + 1) % 4);
-            Action action = strat.chooseAction(frontFree, rightFree);
-            switch (action) {
-                case FORWARD:
-                    if (frontFree) moveForward(agent);
-                    break;
-                case TURN_LEFT:
-                    agent.direction = (agent.direction + 3) % 4;
-                    break;
-                case TURN_RIGHT:
-                    agent.direction = (agent.direction + 1) % 4;
-                    break;
-                case STOP:
-                    steps = maxSteps;
-                    break;
-            }
+    private static final int GOAL_SCORE = 1000;
+    private static final int FAILURE_SCORE = 100;
+
+    private static final ThreadLocal<Simulation> SIMULATION = ThreadLocal.withInitial(Simulation::new);
+    private static final ThreadLocal<LockstepSimulation> LOCKSTEP = ThreadLocal.withInitial(LockstepSimulation::new);
+
+    public static double evaluate(Strategy strat, MazePool pool) {
+        return evaluate(strat.getSensors(), strat.getTable(), 0, pool);
+    }
+
+    // Mean score of the action table at `offset` of a flat array of tables.
+    public static double evaluate(SensorSet sensors, byte[] tables, int offset, MazePool pool) {
+        SimulationEvent event = new SimulationEvent();
+        event.begin();
+        List<Maze> mazes = pool.getMazes();
+        Simulation sim = SIMULATION.get();
+        double total = 0;
+        long steps = 0, skipped = 0;
+        for (Maze maze : mazes) {
+            sim.reset(maze);
+            sim.run(sensors, tables, offset, maze.getConfig().getMaxSteps());
+            total += score(sim);
+            steps += sim.getExecutedSteps();
+            skipped += sim.getSteps() - sim.getExecutedSteps();
         }
-        if (maze[agent.y][agent.x] == 'G') {
-            return 1000 - steps;
-        } else {
-            int dist = Math.abs(agent.x - 30) + Math.abs(agent.y - 1);
-            return 100 - dist;
+        Metrics.recordSimulation(mazes.size(), steps, skipped);
+        if (event.shouldCommit()) {
+            event.agents = 1;
+            event.mazes = mazes.size();
+            event.steps = steps;
+            event.skippedSteps = skipped;
+            event.commit();
         }
+        return total / mazes.size();
     }
 
-    private static boolean isFree(Agent a, char[][] maze, int dir) {
-        int nx = a.x, ny = a.y;
-        switch (dir) {
-            case 0: ny--; break;
-            case 1: nx++; break;
-            case 2: ny++; break;
-            case 3: nx--; break;
+    // Mean score over every maze of a corpus. Strategies without a packed id are run one maze at a time.
+    public static double evaluate(Strategy strat, MazeCorpus corpus) {
+        if (strat.isPacked()) {
+            byte[] genome = {(byte) strat.genomeId()};
+            return evaluate(genome, 1, corpus, 0, corpus.size())[0];
         }
-        return ny >= 0 && ny < maze.length && nx >= 0 && nx < maze[0].length && maze[ny][nx] != '#';
+        double total = 0;
+        for (long i = 0; i < corpus.size(); i++) total += evaluate(strat, corpus.get(i));
+        return total / corpus.size();
     }
 
-    private static void moveForward(Agent a) {
-        switch (a.direction) {
-            case 0: a.y--; break;
-            case 1: a.x++; break;
-            case 2: a.y++; break;
-            case 3: a.x--; break;
+    // Mean score of each of the first `count` packed genomes over corpus mazes [from, to). Each maze
+    // is read from the mapped file once and all genomes are run on it in lockstep.
+    public static double[] evaluate(byte[] genomes, int count, MazeCorpus corpus, long from, long to) {
+        checkRange(corpus, from, to);
+        double[] totals = new double[count];
+        accumulate(genomes, count, corpus, from, to, totals);
+        for (int g = 0; g < count; g++) totals[g] /= to - from;
+        return totals;
+    }
+
+    static void checkRange(MazeCorpus corpus, long from, long to) {
+        if (from < 0 || to > corpus.size() || from >= to) throw new IllegalArgumentException("Invalid maze range: [" + from + ", " + to + ")");
+    }
+
+    // Adds each genome's total score over corpus mazes [from, to) to totals.
+    static void accumulate(byte[] genomes, int count, MazeCorpus corpus, long from, long to, double[] totals) {
+        LockstepSimulation sim = LOCKSTEP.get();
+        for (long i = from; i < to; i++) sim.evaluate(genomes, count, corpus.get(i), totals);
+    }
+
+    // Mean score of each of the first `count` packed genomes over the mazes, summed in maze order.
+    public static double[] evaluate(byte[] genomes, int count, List<Maze> mazes) {
+        if (mazes.isEmpty()) throw new IllegalArgumentException("No mazes to evaluate on");
+        LockstepSimulation sim = LOCKSTEP.get();
+        double[] totals = new double[count];
+        for (Maze maze : mazes) sim.evaluate(genomes, count, maze, totals);
+        for (int g = 0; g < count; g++) totals[g] /= mazes.size();
+        return totals;
+    }
+
+    public static double evaluate(Strategy strat, Maze maze) {
+        Simulation sim = SIMULATION.get();
+        double score = run(sim, strat, maze);
+        Metrics.recordSimulation(1, sim.getExecutedSteps(), sim.getSteps() - sim.getExecutedSteps());
+        return score;
+    }
+
+    // Whether the strategy reaches the goal on the maze. For reporting on an already evaluated
+    // strategy, so the run is not counted in the simulation metrics.
+    public static boolean solves(Strategy strat, Maze maze) {
+        return isSuccess(run(SIMULATION.get(), strat, maze));
+    }
+
+    private static double run(Simulation sim, Strategy strat, Maze maze) {
+        sim.reset(maze);
+        sim.run(strat, maze.getConfig().getMaxSteps());
+        return score(sim);
+    }
+
+    // Scores a finished (or abandoned) run: reaching the goal earns more the fewer steps it took,
+    // anything else is ranked by the remaining Manhattan distance to the goal.
+    public static double score(Simulation sim) {
+        return score(sim.getMaze(), sim.getStatus() == Simulation.Status.GOAL, sim.getSteps(), sim.getX(), sim.getY());
+    }
+
+    static double score(Maze maze, boolean goalReached, int steps, int x, int y) {
+        if (goalReached) {
+            return GOAL_SCORE - steps;
+        } else {
+            int dist = Math.abs(x - maze.getGoalX()) + Math.abs(y - maze.getGoalY());
+            return FAILURE_SCORE - dist;
         }
     }
-}
\ No newline at end of file
+
+    // A run that misses the goal never scores above FAILURE_SCORE.
+    public static boolean isSuccess(double score) {
+        return score > FAILURE_SCORE;
+    }
+}
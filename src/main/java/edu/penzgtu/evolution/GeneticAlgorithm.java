@@ -1,80 +1,143 @@
 package edu.penzgtu.evolution;
 
-import edu.penzgtu.util.MazeGenerator;
+import edu.penzgtu.util.MazePool;
+import edu.penzgtu.util.RandomSource;
 
 import java.util.*;
 
+// Works on a flat Population: children are bred into its next buffers and swapped in, so a
+// generation allocates nothing per individual.
 public class GeneticAlgorithm implements EvolutionaryAlgorithm {
-    private List<Individual> population;
+    private Population population;
     private int populationSize;
-    private final Random rand = new Random();
+    private final RandomSource random;
+    private final PopulationEvaluator evaluator;
+    private SensorSet sensors;
+    private SplittableRandom rand;
+    private int generation;
+
+    public GeneticAlgorithm() {
+        this(PopulationEvaluator.sequential(), new RandomSource(System.nanoTime()));
+    }
+
+    public GeneticAlgorithm(PopulationEvaluator evaluator, RandomSource random) {
+        this(evaluator, random, SensorSet.DEFAULT);
+    }
+
+    public GeneticAlgorithm(PopulationEvaluator evaluator, RandomSource random, SensorSet sensors) {
+        this.evaluator = evaluator;
+        this.random = random;
+        this.sensors = sensors;
+    }
 
     @Override
     public void initialize(int populationSize) {
         this.populationSize = populationSize;
-        population = new ArrayList<>();
-        for (int i = 0; i < populationSize; i++) {
-            population.add(new Individual(new Strategy()));
-        }
+        generation = 0;
+        rand = random.stream("ga.init");
+        population = new Population(sensors, populationSize);
+        byte[] tables = population.tables();
+        for (int i = 0; i < tables.length; i++) tables[i] = (byte) rand.nextInt(Action.COUNT);
     }
 
     @Override
-    public void evaluate(MazeGenerator generator) {
-        for (Individual ind : population) {
-            double fit = FitnessEvaluator.evaluate(ind.getStrategy(), generator);
-            ind.setFitness(fit);
-        }
+    public void evaluate(MazePool mazes) {
+        evaluator.evaluate(population, mazes);
     }
 
     @Override
     public void evolve() {
-        List<Individual> newPop = new ArrayList<>();
-        while (newPop.size() < populationSize) {
-            Individual a = tournament();
-            Individual b = tournament();
-            Strategy[] kids = crossover(a.getStrategy(), b.getStrategy());
-            for (Strategy s : kids) {
-                mutate(s);
-                newPop.add(new Individual(s));
-                if (newPop.size() >= populationSize) break;
+        rand = random.stream("ga.evolve", generation++);
+        byte[] next = population.nextTables();
+        double[] nextFitness = population.nextFitness();
+        for (int i = 0; i < populationSize; i += 2) {
+            int a = tournament();
+            int b = tournament();
+            boolean pair = i + 1 < populationSize;
+            crossover(a, b, i, pair);
+            mutate(next, population.offset(i));
+            nextFitness[i] = 0;
+            if (pair) {
+                mutate(next, population.offset(i + 1));
+                nextFitness[i + 1] = 0;
             }
         }
-        population = newPop;
+        population.swap();
     }
 
     @Override
     public Individual getBest() {
-        return Collections.max(population, Comparator.comparingDouble(Individual::getFitness));
+        return population.get(population.best());
+    }
+
+    @Override
+    public List<Individual> getPopulation() {
+        return Collections.unmodifiableList(population.toList());
     }
 
-    private Individual tournament() {
-        Individual best = null;
+    @Override
+    public double getMeanFitness() {
+        return population.meanFitness();
+    }
+
+    @Override
+    public AlgorithmState saveState() {
+        return population.toState(generation, populationSize);
+    }
+
+    @Override
+    public void restoreState(AlgorithmState state) {
+        populationSize = state.getPopulationSize();
+        generation = state.getGeneration();
+        sensors = state.getSensors();
+        population = Population.of(state);
+    }
+
+    // Copies of the `count` fittest individuals, fittest first.
+    List<Individual> emigrants(int count) {
+        int[] order = new int[Math.min(count, populationSize)];
+        population.rank(order, true);
+        List<Individual> out = new ArrayList<>(order.length);
+        for (int i : order) out.add(population.get(i));
+        return out;
+    }
+
+    // Replaces the least fit individuals with the newcomers, which keep the fitness they were given.
+    void immigrate(List<Individual> newcomers) {
+        if (newcomers.isEmpty()) return;
+        int[] order = new int[Math.min(newcomers.size(), populationSize)];
+        population.rank(order, false);
+        for (int k = 0; k < order.length; k++) population.set(order[k], newcomers.get(k));
+    }
+
+    // Index of the fittest of three random picks, the first one on ties.
+    private int tournament() {
+        int best = -1;
         for (int i = 0; i < 3; i++) {
-            Individual cand = population.get(rand.nextInt(populationSize));
-            if (best == null || cand.getFitness() > best.getFitness()) best = cand;
+            int cand = rand.nextInt(populationSize);
+            if (best < 0 || population.getFitness(cand) > population.getFitness(best)) best = cand;
         }
         return best;
     }
 
-    private Strategy[] crossover(Strategy p1, Strategy p2) {
-        Action[] g1 = p1.getGenes();
-        Action[] g2 = p2.getGenes();
-        int point = rand.nextInt(g1.length);
-        Action[] c1 = new Action[g1.length];
-        Action[] c2 = new Action[g1.length];
-        for (int i = 0; i < g1.length; i++) {
-            if (i < point) { c1[i] = g1[i]; c2[i] = g2[i]; }
-            else { c1[i] = g2[i]; c2[i] = g1[i]; }
-        }
-        return new Strategy[]{ new Strategy(c1), new Strategy(c2) };
+    // One-point crossover of parents a and b into next slots i and, if `pair`, i + 1.
+    private void crossover(int a, int b, int i, boolean pair) {
+        byte[] tables = population.tables(), next = population.nextTables();
+        int size = population.getTableSize();
+        int point = rand.nextInt(size);
+        int pa = population.offset(a), pb = population.offset(b), c = population.offset(i);
+        System.arraycopy(tables, pa, next, c, point);
+        System.arraycopy(tables, pb + point, next, c + point, size - point);
+        if (!pair) return;
+        System.arraycopy(tables, pb, next, c + size, point);
+        System.arraycopy(tables, pa + point, next, c + size + point, size - point);
     }
 
-    private void mutate(Strategy strat) {
-        Action[] genes = strat.getGenes();
-        for (int i = 0; i < genes.length; i++) {
+    private void mutate(byte[] tables, int offset) {
+        for (int i = offset; i < offset + population.getTableSize(); i++) {
             double mutationRate = 0.1;
             if (rand.nextDouble() < mutationRate) {
-                genes[i] = Action.values()[rand.nextInt(Action.values().length)];
+                tables[i] = (byte) rand.nextInt(Action.COUNT);
             }
         }
     }
@@ -0,0 +1,91 @@
+package edu.penzgtu.evolution;
+
+import edu.penzgtu.util.MazePool;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+// Fitness per packed genome id for the current maze set. An entry is valid only while its stamp
+// equals the current epoch, so moving to a new maze set invalidates everything in O(1).
+public class GenomeFitnessCache {
+    private final boolean exhaustive;
+    private final double[] fitness = new double[Strategy.GENOME_COUNT];
+    private final AtomicLongArray stamps = new AtomicLongArray(Strategy.GENOME_COUNT);
+    private final LongAdder hits;
+    private final LongAdder misses;
+    private MazePool scope;
+    private long scopeVersion;
+    private long epoch;
+
+    public GenomeFitnessCache(boolean exhaustive) {
+        this(exhaustive, new LongAdder(), new LongAdder());
+    }
+
+    private GenomeFitnessCache(boolean exhaustive, LongAdder hits, LongAdder misses) {
+        this.exhaustive = exhaustive;
+        this.hits = hits;
+        this.misses = misses;
+    }
+
+    // A cache of the same kind for a consumer on another maze sequence, e.g. an island running ahead
+    // on its own pool. Its lookups count towards this cache's hits and misses.
+    public GenomeFitnessCache fork() {
+        return new GenomeFitnessCache(exhaustive, hits, misses);
+    }
+
+    public boolean isExhaustive() { return exhaustive; }
+
+    // Must be called before a batch of lookups; returns true when the maze set changed.
+    public synchronized boolean rescope(MazePool mazes) {
+        if (scope == mazes && scopeVersion == mazes.getVersion()) return false;
+        scope = mazes;
+        scopeVersion = mazes.getVersion();
+        epoch++;
+        return true;
+    }
+
+    public double evaluate(Strategy strategy, MazePool mazes) {
+        if (!strategy.isPacked()) throw new IllegalArgumentException("Only default-sensor strategies are cached, not " + strategy.getSensors());
+        return evaluate(strategy.getTable(), 0, mazes);
+    }
+
+    // Fitness of the default-sensor table at `offset` of a flat array of tables.
+    double evaluate(byte[] tables, int offset, MazePool mazes) {
+        int id = Strategy.genomeId(tables, offset);
+        double value = lookup(id);
+        if (!Double.isNaN(value)) return value;
+        value = FitnessEvaluator.evaluate(SensorSet.DEFAULT, tables, offset, mazes);
+        store(id, value);
+        return value;
+    }
+
+    // Cached fitness of a genome, or NaN when it has not been scored on the current maze set.
+    double lookup(int id) {
+        if (stamps.get(id) == epoch) {
+            hits.increment();
+            return fitness[id];
+        }
+        misses.increment();
+        return Double.NaN;
+    }
+
+    // The stamp is published after the value, so a reader that sees the stamp also sees the value.
+    void store(int id, double value) {
+        fitness[id] = value;
+        stamps.set(id, epoch);
+    }
+
+    public long getHits() { return hits.sum(); }
+
+    public long getMisses() { return misses.sum(); }
+
+    public double getHitRate() {
+        long h = hits.sum(), total = h + misses.sum();
+        return total == 0 ? 0 : (double) h / total;
+    }
+
+    public void resetStats() {
+        hits.reset();
+        misses.reset();
+    }
+}
@@ -0,0 +1,317 @@
+package edu.penzgtu.evolution;
+
+import edu.penzgtu.util.MazePool;
+import edu.penzgtu.util.RandomSource;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Island model: the population is split into independent GeneticAlgorithm sub-populations, each
+// evaluated and evolved by its own thread on its own fork of the caller's maze pool. A pool's mazes
+// depend only on the seed and the generation, so an island sees the same mazes in a generation
+// however far it is ahead of the others. Every `migrationInterval` generations each island sends
+// copies of its best `migrants` individuals to the next island in a ring, where they replace the
+// least fit; a receiver waits for its batch before it evolves, which is the only point where islands
+// wait for each other.
+//
+// The caller's evaluate() and evolve() move a cursor over the islands' results: evaluate() blocks
+// until every island has evaluated the cursor's generation, evolve() returns at once. Islands run up
+// to `migrationInterval` generations ahead of the cursor and report the state they evolved into, so
+// saveState() returns the state at the cursor. Times the caller measures for the two calls are waits
+// for the slowest island, not work. Each island draws from its own RandomSource, so results are the
+// same as stepping all islands together.
+public class IslandGeneticAlgorithm implements EvolutionaryAlgorithm {
+    private final RandomSource random;
+    private final PopulationEvaluator evaluator;
+    private final List<PopulationEvaluator> islandEvaluators = new ArrayList<>();
+    private final AtomicInteger threadCount = new AtomicInteger();
+    private SensorSet sensors;
+    private int islandCount;
+    private int migrationInterval;
+    private int migrants;
+    private GeneticAlgorithm[] islands;
+    private int populationSize;
+    private int generation;
+
+    // While the islands run: the pool they were started on, their threads and pool forks, the queue
+    // of each island's results and the migration mailboxes.
+    private MazePool source;
+    private ExecutorService threads;
+    private MazePool[] pools;
+    private List<BlockingQueue<Result>> results;
+    private List<BlockingQueue<List<Individual>>> mailboxes;
+    private volatile Throwable failure;
+    // The latest result taken from each island, and the latest state it evolved into.
+    private Result[] current;
+    private AlgorithmState[] evolved;
+
+    public IslandGeneticAlgorithm(PopulationEvaluator evaluator, RandomSource random, int islands,
+                                  int migrationInterval, int migrants) {
+        this(evaluator, random, SensorSet.DEFAULT, islands, migrationInterval, migrants);
+    }
+
+    public IslandGeneticAlgorithm(PopulationEvaluator evaluator, RandomSource random, SensorSet sensors, int islands,
+                                  int migrationInterval, int migrants) {
+        if (islands < 1) throw new IllegalArgumentException("Island count must be positive: " + islands);
+        if (migrationInterval < 1) throw new IllegalArgumentException("Migration interval must be positive: " + migrationInterval);
+        if (migrants < 0) throw new IllegalArgumentException("Migrant count must not be negative: " + migrants);
+        this.evaluator = evaluator;
+        this.random = random;
+        this.sensors = sensors;
+        this.islandCount = islands;
+        this.migrationInterval = migrationInterval;
+        this.migrants = migrants;
+    }
+
+    @Override
+    public void initialize(int populationSize) {
+        if (populationSize < islandCount) {
+            throw new IllegalArgumentException("Population " + populationSize + " is smaller than " + islandCount + " islands");
+        }
+        stop(false);
+        this.populationSize = populationSize;
+        generation = 0;
+        createIslands();
+        for (int k = 0; k < islandCount; k++) islands[k].initialize(islandSize(k));
+    }
+
+    // Islands score on their own threads with sequential evaluators. Each island is on its own maze
+    // pool, so each gets its own genome cache; a batch scorer, if any, is shared. Evaluators are kept
+    // for later runs, and a restored state may need more of them.
+    private void createIslands() {
+        GenomeFitnessCache cache = evaluator.getCache();
+        for (int k = islandEvaluators.size(); k < islandCount; k++) {
+            islandEvaluators.add(new PopulationEvaluator(1, cache == null ? null : cache.fork(), evaluator.getScorer()));
+        }
+        islands = new GeneticAlgorithm[islandCount];
+        for (int k = 0; k < islandCount; k++) {
+            islands[k] = new GeneticAlgorithm(islandEvaluators.get(k), new RandomSource(random.stream("island", k).nextLong()), sensors);
+        }
+    }
+
+    private int islandSize(int k) {
+        return populationSize / islandCount + (k < populationSize % islandCount ? 1 : 0);
+    }
+
+    @Override
+    public void evaluate(MazePool mazes) {
+        if (mazes != source) start(mazes);
+        advance(Result.rank(generation, false));
+    }
+
+    @Override
+    public void evolve() {
+        if (source == null) throw new IllegalStateException("Islands evolve only after evaluate()");
+        generation++;
+    }
+
+    @Override
+    public Individual getBest() {
+        Individual best = null;
+        for (Result result : view()) {
+            if (best == null || result.best.getFitness() > best.getFitness()) best = result.best;
+        }
+        return best;
+    }
+
+    @Override
+    public List<Individual> getPopulation() {
+        List<Individual> all = new ArrayList<>(populationSize);
+        for (Result result : view()) all.addAll(result.state.toPopulation());
+        return Collections.unmodifiableList(all);
+    }
+
+    @Override
+    public double getMeanFitness() {
+        Result[] view = view();
+        double total = 0;
+        for (int k = 0; k < islandCount; k++) total += view[k].meanFitness * islandSize(k);
+        return total / populationSize;
+    }
+
+    // Islands are stored one after another; parameters hold the island count, migration interval and
+    // migrant count, which restoreState() adopts.
+    @Override
+    public AlgorithmState saveState() {
+        AlgorithmState[] parts = new AlgorithmState[islandCount];
+        if (source == null) {
+            for (int k = 0; k < islandCount; k++) parts[k] = islands[k].saveState();
+        } else {
+            advance(Result.rank(generation, true));
+            parts = evolved.clone();
+        }
+        return AlgorithmState.concat(generation, populationSize, parts, islandCount, migrationInterval, migrants);
+    }
+
+    @Override
+    public void restoreState(AlgorithmState state) {
+        stop(false);
+        islandCount = (int) state.parameter(0);
+        migrationInterval = (int) state.parameter(1);
+        migrants = (int) state.parameter(2);
+        populationSize = state.getPopulationSize();
+        generation = state.getGeneration();
+        sensors = state.getSensors();
+        if (state.size() != populationSize) {
+            throw new IllegalArgumentException("Expected " + populationSize + " individuals, state has " + state.size());
+        }
+        createIslands();
+        int from = 0;
+        for (int k = 0; k < islandCount; k++) {
+            int size = islandSize(k);
+            islands[k].restoreState(state.slice(from, from + size));
+            from += size;
+        }
+    }
+
+    public int getIslandCount() { return islandCount; }
+
+    public void shutdown() {
+        stop(false);
+    }
+
+    // Starts the island threads on forks of `mazes`, which must be at the cursor's generation. Islands
+    // already running on another pool are first rewound to the cursor.
+    private void start(MazePool mazes) {
+        stop(true);
+        failure = null;
+        pools = new MazePool[islandCount];
+        results = new ArrayList<>(islandCount);
+        mailboxes = new ArrayList<>(islandCount);
+        current = new Result[islandCount];
+        evolved = new AlgorithmState[islandCount];
+        for (int k = 0; k < islandCount; k++) {
+            pools[k] = mazes.fork();
+            results.add(new LinkedBlockingQueue<>(2 * migrationInterval));
+            mailboxes.add(new LinkedBlockingQueue<>());
+            current[k] = new Result(generation, true, islands[k]);
+            evolved[k] = current[k].state;
+        }
+        threads = Executors.newFixedThreadPool(islandCount, r -> {
+            Thread t = new Thread(r, "island-" + threadCount.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        source = mazes;
+        for (int k = 0; k < islandCount; k++) {
+            int island = k, from = generation;
+            threads.execute(() -> runIsland(island, from));
+        }
+    }
+
+    // Each result is a queue slot, two per generation, which bounds how far an island runs ahead.
+    private void runIsland(int k, int from) {
+        GeneticAlgorithm island = islands[k];
+        MazePool mazes = pools[k];
+        BlockingQueue<Result> out = results.get(k);
+        try {
+            for (int g = from; ; g++) {
+                island.evaluate(mazes);
+                out.put(new Result(g, false, island));
+                if (migrants > 0 && islandCount > 1 && (g + 1) % migrationInterval == 0) {
+                    mailboxes.get((k + 1) % islandCount).put(island.emigrants(migrants));
+                    island.immigrate(mailboxes.get(k).take());
+                }
+                island.evolve();
+                mazes.nextGeneration();
+                out.put(new Result(g + 1, true, island));
+            }
+        } catch (InterruptedException e) {
+            // stopped
+        } catch (RuntimeException | Error e) {
+            if (!Thread.currentThread().isInterrupted()) failure = e;
+        }
+    }
+
+    // Each island's result at the cursor: its evaluation once evaluate() has reached the cursor's
+    // generation, otherwise the state it evolved into.
+    private Result[] view() {
+        if (source != null) {
+            advance(Result.rank(generation, true));
+            return current;
+        }
+        Result[] view = new Result[islandCount];
+        for (int k = 0; k < islandCount; k++) view[k] = new Result(generation, true, islands[k]);
+        return view;
+    }
+
+    // Takes results until every island's current one is at least at `rank`.
+    private void advance(long rank) {
+        for (int k = 0; k < islandCount; k++) {
+            while (current[k].rank() < rank) {
+                current[k] = take(k);
+                if (current[k].evolved) evolved[k] = current[k].state;
+            }
+        }
+    }
+
+    private Result take(int k) {
+        try {
+            while (true) {
+                Result result = results.get(k).poll(100, TimeUnit.MILLISECONDS);
+                if (result != null) return result;
+                Throwable cause = failure;
+                if (cause != null) {
+                    stop(false);
+                    if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+                    if (cause instanceof Error) throw (Error) cause;
+                    throw new IllegalStateException(cause);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for an island", e);
+        }
+    }
+
+    // Stops the island threads and releases their pool forks. With `rewind`, the islands are first
+    // set back to the state they evolved into at the cursor, so they can be started again.
+    private void stop(boolean rewind) {
+        if (source == null) return;
+        if (rewind) advance(Result.rank(generation, true));
+        threads.shutdownNow();
+        boolean interrupted = false;
+        while (true) {
+            try {
+                if (threads.awaitTermination(1, TimeUnit.SECONDS)) break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) Thread.currentThread().interrupt();
+        for (MazePool pool : pools) pool.close();
+        if (rewind) for (int k = 0; k < islandCount; k++) islands[k].restoreState(evolved[k]);
+        source = null;
+        threads = null;
+        pools = null;
+        results = null;
+        mailboxes = null;
+        current = null;
+        evolved = null;
+    }
+
+    // An island's population after evaluating generation `generation`, or after evolving into it.
+    private static final class Result {
+        final int generation;
+        final boolean evolved;
+        final AlgorithmState state;
+        final Individual best;
+        final double meanFitness;
+
+        Result(int generation, boolean evolved, GeneticAlgorithm island) {
+            this.generation = generation;
+            this.evolved = evolved;
+            this.state = island.saveState();
+            this.best = island.getBest();
+            this.meanFitness = island.getMeanFitness();
+        }
+
+        // Results in the order an island produces them: evolved into g, then evaluated g.
+        static long rank(int generation, boolean evolved) {
+            return 2L * generation + (evolved ? 0 : 1);
+        }
+
+        long rank() { return rank(generation, evolved); }
+    }
+}
@@ -0,0 +1,177 @@
+package edu.penzgtu.evolution;
+
+import edu.penzgtu.metrics.Metrics;
+import edu.penzgtu.metrics.SimulationEvent;
+import edu.penzgtu.model.Maze;
+import edu.penzgtu.model.ObstacleSchedule;
+
+import java.util.Arrays;
+
+// Runs many genomes on one maze in lockstep: each tick advances every agent that is still running.
+// Agent state lives in parallel arrays and the genomes in a byte table of packed genome ids, so the
+// inner loop only touches primitive arrays. Each agent runs Brent's cycle detection on its
+// (cell, direction) state in O(1) space. When a repeat is found, the states walked since the last
+// checkpoint are exactly one cycle, so it is already known whether the cycle can ever be lethal; a
+// safe cycle is only stepped up to the position the agent would hold at the step budget. End states,
+// and therefore scores, are the same as Simulation's. Instances are not thread-safe.
+public final class LockstepSimulation {
+    // Action ordinals.
+    private static final int FORWARD = 0, TURN_LEFT = 1, TURN_RIGHT = 2, STOP = 3;
+    private static final int[] DX = {0, 1, 0, -1};
+    private static final int[] DY = {-1, 0, 1, 0};
+
+    // Cycle tracking modes: looking for a repeat, heading for the end position on a safe cycle, or
+    // stepping normally because the cycle can be lethal.
+    private static final byte SEARCHING = 0, FINISHING = 1, PLAIN = 2;
+
+    private int[] x = new int[0], y = new int[0], dir = new int[0];
+    private int[] tortoise = new int[0], power = new int[0], lam = new int[0], until = new int[0];
+    private byte[] mode = new byte[0];
+    private boolean[] lethalSeen = new boolean[0];
+    private int[] running = new int[0];
+    // Ticks the last run() fast-forwarded past for agents settled by cycle detection.
+    private long skipped;
+
+    // Adds the score of genomes[i] on this maze to totals[i] for the first count genomes.
+    public void evaluate(byte[] genomes, int count, Maze maze, double[] totals) {
+        SimulationEvent event = new SimulationEvent();
+        event.begin();
+        long steps = run(genomes, count, maze, totals);
+        Metrics.recordSimulation(count, steps, skipped);
+        if (event.shouldCommit()) {
+            event.agents = count;
+            event.mazes = 1;
+            event.steps = steps;
+            event.skippedSteps = skipped;
+            event.commit();
+        }
+    }
+
+    // Returns the agent steps executed, counting each agent up to the tick it stopped being stepped.
+    // An agent settled by cycle detection is scored as if it ran the full budget, as in Simulation,
+    // and the ticks it skipped are left in `skipped`.
+    private long run(byte[] genomes, int count, Maze maze, double[] totals) {
+        ensureCapacity(count);
+        ObstacleSchedule schedule = maze.getObstacleSchedule();
+        int maxSteps = maze.getConfig().getMaxSteps();
+        int width = maze.getWidth();
+        int startX = maze.getStartX(), startY = maze.getStartY();
+        if (maze.isGoal(startX, startY)) {
+            double score = FitnessEvaluator.score(maze, true, 0, startX, startY);
+            for (int i = 0; i < count; i++) totals[i] += score;
+            skipped = 0;
+            return 0;
+        }
+
+        long steps = 0;
+        skipped = 0;
+        int active = 0;
+        for (int i = 0; i < count; i++) {
+            x[i] = startX;
+            y[i] = startY;
+            dir[i] = Simulation.START_DIRECTION;
+            tortoise[i] = ((startY * width + startX) << 2) | Simulation.START_DIRECTION;
+            power[i] = 1;
+            lam[i] = 1;
+            mode[i] = SEARCHING;
+            lethalSeen[i] = false;
+            running[active++] = i;
+        }
+
+        for (int t = 1; t <= maxSteps && active > 0; t++) {
+            int k = 0;
+            while (k < active) {
+                int i = running[k];
+                int d = dir[i], px = x[i], py = y[i];
+                int r = (d + 1) & 3;
+                boolean frontFree = !maze.isWall(px + DX[d], py + DY[d]);
+                boolean rightFree = !maze.isWall(px + DX[r], py + DY[r]);
+                int action = (genomes[i] >>> (2 * ((frontFree ? 0 : 2) + (rightFree ? 0 : 1)))) & 3;
+                switch (action) {
+                    case FORWARD:
+                        if (frontFree) {
+                            px += DX[d];
+                            py += DY[d];
+                        }
+                        break;
+                    case TURN_LEFT:
+                        d = (d + 3) & 3;
+                        break;
+                    case TURN_RIGHT:
+                        d = r;
+                        break;
+                }
+                x[i] = px;
+                y[i] = py;
+                dir[i] = d;
+
+                int cell = py * width + px;
+                // A run settled by cycle detection stands for one that lasted the full budget.
+                boolean done, settled = false;
+                if (maze.isGoal(px, py)) {
+                    totals[i] += FitnessEvaluator.score(maze, true, t, px, py);
+                    done = true;
+                } else {
+                    done = action == STOP || schedule.isLethal(cell, t);
+                    if (!done) done = settled = trackCycle(i, (cell << 2) | d, cell, t, maxSteps, schedule);
+                    if (done) totals[i] += FitnessEvaluator.score(maze, false, settled ? maxSteps : t, px, py);
+                }
+                if (done) {
+                    running[k] = running[--active];
+                    steps += t;
+                    if (settled) skipped += maxSteps - t;
+                } else {
+                    k++;
+                }
+            }
+        }
+        for (int k = 0; k < active; k++) {
+            int i = running[k];
+            totals[i] += FitnessEvaluator.score(maze, false, maxSteps, x[i], y[i]);
+        }
+        return steps + (long) active * maxSteps;
+    }
+
+    // Returns true when agent i already holds the position it would have after maxSteps.
+    private boolean trackCycle(int i, int state, int cell, int t, int maxSteps, ObstacleSchedule schedule) {
+        switch (mode[i]) {
+            case SEARCHING:
+                if (schedule.isEverLethal(cell)) lethalSeen[i] = true;
+                if (state == tortoise[i]) {
+                    if (lethalSeen[i]) {
+                        mode[i] = PLAIN;
+                        return false;
+                    }
+                    mode[i] = FINISHING;
+                    until[i] = t + (maxSteps - t) % lam[i];
+                    return until[i] == t;
+                }
+                if (power[i] == lam[i]) {
+                    tortoise[i] = state;
+                    power[i] <<= 1;
+                    lam[i] = 0;
+                    lethalSeen[i] = false;
+                }
+                lam[i]++;
+                return false;
+            case FINISHING:
+                return t == until[i];
+            default:
+                return false;
+        }
+    }
+
+    private void ensureCapacity(int count) {
+        if (x.length >= count) return;
+        x = Arrays.copyOf(x, count);
+        y = Arrays.copyOf(y, count);
+        dir = Arrays.copyOf(dir, count);
+        tortoise = Arrays.copyOf(tortoise, count);
+        power = Arrays.copyOf(power, count);
+        lam = Arrays.copyOf(lam, count);
+        until = Arrays.copyOf(until, count);
+        mode = Arrays.copyOf(mode, count);
+        lethalSeen = Arrays.copyOf(lethalSeen, count);
+        running = Arrays.copyOf(running, count);
+    }
+}
@@ -0,0 +1,131 @@
+package edu.penzgtu.evolution;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// A fixed-size population in flat arrays: action tables back to back, getTableSize() bytes each,
+// and one fitness value per individual. Operators fill the next buffers from the current ones and
+// swap() makes them current, so a generation runs without allocating per individual. Individual
+// objects are only built at the edges, by get() and toList(), as detached copies.
+public final class Population {
+    private final SensorSet sensors;
+    private final int size;
+    private final int tableSize;
+    private byte[] tables, nextTables;
+    private double[] fitness, nextFitness;
+
+    public Population(SensorSet sensors, int size) {
+        if (size < 1) throw new IllegalArgumentException("Population size must be positive: " + size);
+        this.sensors = sensors;
+        this.size = size;
+        this.tableSize = sensors.getTableSize();
+        this.tables = new byte[size * tableSize];
+        this.nextTables = new byte[size * tableSize];
+        this.fitness = new double[size];
+        this.nextFitness = new double[size];
+    }
+
+    static Population of(AlgorithmState state) {
+        Population population = new Population(state.getSensors(), state.size());
+        population.tables = state.getTables();
+        population.fitness = state.getFitness();
+        return population;
+    }
+
+    public SensorSet getSensors() { return sensors; }
+    public int size() { return size; }
+    public int getTableSize() { return tableSize; }
+
+    // Live buffers; individual i's table starts at offset(i).
+    byte[] tables() { return tables; }
+    byte[] nextTables() { return nextTables; }
+    double[] nextFitness() { return nextFitness; }
+
+    public int offset(int i) { return i * tableSize; }
+
+    public double getFitness(int i) { return fitness[i]; }
+    public void setFitness(int i, double value) { fitness[i] = value; }
+
+    // Packed id of individual i; only for the default sensor set.
+    public int genomeId(int i) { return Strategy.genomeId(tables, offset(i)); }
+
+    public void swap() {
+        byte[] t = tables;
+        tables = nextTables;
+        nextTables = t;
+        double[] f = fitness;
+        fitness = nextFitness;
+        nextFitness = f;
+    }
+
+    // Copies individual i of `from`, table and fitness, into slot j of this population's next buffers.
+    void copyToNext(int j, Population from, int i) {
+        System.arraycopy(from.tables, from.offset(i), nextTables, offset(j), tableSize);
+        nextFitness[j] = from.fitness[i];
+    }
+
+    // Copies individual i of `from` into slot j of the current buffers.
+    void copy(int j, Population from, int i) {
+        System.arraycopy(from.tables, from.offset(i), tables, offset(j), tableSize);
+        fitness[j] = from.fitness[i];
+    }
+
+    void set(int j, Individual ind) {
+        Strategy strategy = ind.getStrategy();
+        if (strategy.getSensors() != sensors) {
+            throw new IllegalArgumentException("Individual reads " + strategy.getSensors() + ", not " + sensors);
+        }
+        System.arraycopy(strategy.getTable(), 0, tables, offset(j), tableSize);
+        fitness[j] = ind.getFitness();
+    }
+
+    // Index of the fittest individual, the first one on ties.
+    public int best() {
+        int best = 0;
+        for (int i = 1; i < size; i++) if (fitness[i] > fitness[best]) best = i;
+        return best;
+    }
+
+    public double meanFitness() {
+        double total = 0;
+        for (int i = 0; i < size; i++) total += fitness[i];
+        return total / size;
+    }
+
+    // Writes the indices of the min(out.length, size) fittest individuals into `out`, fittest first,
+    // or the least fit first when `fittest` is false. Ties keep index order, like a stable sort.
+    // Takes O(size * out.length), meant for the few migrants or parents selected per generation.
+    int rank(int[] out, boolean fittest) {
+        int count = Math.min(out.length, size);
+        for (int k = 0; k < count; k++) {
+            int pick = -1;
+            for (int i = 0; i < size; i++) {
+                if (taken(out, k, i)) continue;
+                if (pick < 0 || (fittest ? fitness[i] > fitness[pick] : fitness[i] < fitness[pick])) pick = i;
+            }
+            out[k] = pick;
+        }
+        return count;
+    }
+
+    private static boolean taken(int[] picked, int count, int i) {
+        for (int k = 0; k < count; k++) if (picked[k] == i) return true;
+        return false;
+    }
+
+    public Individual get(int i) {
+        Individual ind = new Individual(new Strategy(sensors, tables, offset(i)));
+        ind.setFitness(fitness[i]);
+        return ind;
+    }
+
+    public List<Individual> toList() {
+        List<Individual> list = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) list.add(get(i));
+        return list;
+    }
+
+    AlgorithmState toState(int generation, int populationSize, double... parameters) {
+        return new AlgorithmState(generation, populationSize, sensors, tables, fitness, parameters);
+    }
+}
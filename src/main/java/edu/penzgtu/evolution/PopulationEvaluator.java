@@ -0,0 +1,240 @@
+package edu.penzgtu.evolution;
+
+import edu.penzgtu.model.Maze;
+import edu.penzgtu.util.MazeCorpus;
+import edu.penzgtu.util.MazePool;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.IntConsumer;
+
+public class PopulationEvaluator {
+    private static final int CHUNK_SIZE = 4;
+    // Populations at least this large are scored by the lockstep engine instead of one run per individual.
+    public static final int BATCH_THRESHOLD = 1024;
+
+    private static final ThreadLocal<LockstepSimulation> LOCKSTEP = ThreadLocal.withInitial(LockstepSimulation::new);
+
+    private final int parallelism;
+    private final ForkJoinPool pool;
+    private final GenomeFitnessCache cache;
+    private final BatchScorer scorer;
+
+    public PopulationEvaluator(int parallelism) {
+        this(parallelism, null);
+    }
+
+    public PopulationEvaluator(int parallelism, GenomeFitnessCache cache) {
+        this(parallelism, cache, null);
+    }
+
+    // With a scorer, populations and exhaustive cache fills are scored through it as batches of
+    // distinct genomes; single strategies are still scored locally. The cache, the scorer and the
+    // lockstep engine work on packed genome ids, so strategies over other sensor sets skip them.
+    public PopulationEvaluator(int parallelism, GenomeFitnessCache cache, BatchScorer scorer) {
+        if (parallelism < 1) throw new IllegalArgumentException("Parallelism must be positive: " + parallelism);
+        this.parallelism = parallelism;
+        this.pool = parallelism == 1 ? null : new ForkJoinPool(parallelism);
+        this.cache = cache;
+        this.scorer = scorer;
+    }
+
+    public static PopulationEvaluator sequential() { return new PopulationEvaluator(1); }
+
+    public int getParallelism() { return parallelism; }
+
+    public GenomeFitnessCache getCache() { return cache; }
+
+    public BatchScorer getScorer() { return scorer; }
+
+    public void evaluate(List<Individual> individuals, MazePool mazes) {
+        prepareCache(mazes);
+        boolean batch = scorer != null || (cache == null && individuals.size() >= BATCH_THRESHOLD);
+        if (batch && allPacked(individuals)) {
+            boolean[] present = new boolean[Strategy.GENOME_COUNT];
+            for (Individual ind : individuals) present[ind.getStrategy().genomeId()] = true;
+            double[] fitnessOf = evaluateGenomes(present, mazes);
+            for (Individual ind : individuals) ind.setFitness(fitnessOf[ind.getStrategy().genomeId()]);
+        } else {
+            forEach(individuals.size(), i -> {
+                Individual ind = individuals.get(i);
+                ind.setFitness(fitness(ind.getStrategy(), mazes));
+            });
+        }
+    }
+
+    // Same routing as for a list, reading tables straight from the population's buffers.
+    public void evaluate(Population population, MazePool mazes) {
+        prepareCache(mazes);
+        int size = population.size();
+        boolean packed = population.getSensors() == SensorSet.DEFAULT;
+        if (packed && (scorer != null || (cache == null && size >= BATCH_THRESHOLD))) {
+            boolean[] present = new boolean[Strategy.GENOME_COUNT];
+            for (int i = 0; i < size; i++) present[population.genomeId(i)] = true;
+            double[] fitnessOf = evaluateGenomes(present, mazes);
+            for (int i = 0; i < size; i++) population.setFitness(i, fitnessOf[population.genomeId(i)]);
+        } else {
+            SensorSet sensors = population.getSensors();
+            byte[] tables = population.tables();
+            forEach(size, i -> {
+                int offset = population.offset(i);
+                population.setFitness(i, cache == null || !packed
+                        ? FitnessEvaluator.evaluate(sensors, tables, offset, mazes)
+                        : cache.evaluate(tables, offset, mazes));
+            });
+        }
+    }
+
+    // Mean score of each of the first `count` packed genomes over corpus mazes [from, to), with the
+    // range split into chunks scored on the evaluator's threads. Scores are whole numbers, so the
+    // chunk totals add up to exactly the sequential result.
+    public double[] evaluate(byte[] genomes, int count, MazeCorpus corpus, long from, long to) {
+        if (pool == null) return FitnessEvaluator.evaluate(genomes, count, corpus, from, to);
+        FitnessEvaluator.checkRange(corpus, from, to);
+        long mazes = to - from;
+        int chunks = (int) Math.min(mazes, parallelism * CHUNK_SIZE);
+        double[][] totals = new double[chunks][count];
+        forEach(chunks, c -> FitnessEvaluator.accumulate(genomes, count, corpus,
+                from + mazes * c / chunks, from + mazes * (c + 1) / chunks, totals[c]));
+        double[] fitness = new double[count];
+        for (int g = 0; g < count; g++) {
+            double total = 0;
+            for (double[] row : totals) total += row[g];
+            fitness[g] = total / mazes;
+        }
+        return fitness;
+    }
+
+    private void forEach(int size, IntConsumer action) {
+        if (pool == null) {
+            for (int i = 0; i < size; i++) action.accept(i);
+        } else {
+            pool.invoke(new EvaluateTask(action, 0, size));
+        }
+    }
+
+    public double evaluate(Strategy strategy, MazePool mazes) {
+        prepareCache(mazes);
+        return fitness(strategy, mazes);
+    }
+
+    public void shutdown() {
+        if (pool != null) pool.shutdown();
+    }
+
+    private double fitness(Strategy strategy, MazePool mazes) {
+        return cache == null || !strategy.isPacked() ? FitnessEvaluator.evaluate(strategy, mazes) : cache.evaluate(strategy, mazes);
+    }
+
+    private static boolean allPacked(List<Individual> individuals) {
+        for (Individual ind : individuals) if (!ind.getStrategy().isPacked()) return false;
+        return true;
+    }
+
+    // In exhaustive mode every genome is scored as soon as the maze set changes, so all later
+    // fitness calls for this set are array lookups. That is GENOME_COUNT runs per rotation of the
+    // pool, against at most one per distinct genome in lazy mode, so it only wins when the set is
+    // scored many times before it changes.
+    private void prepareCache(MazePool mazes) {
+        if (cache == null || !cache.rescope(mazes) || !cache.isExhaustive()) return;
+        byte[] genomes = new byte[Strategy.GENOME_COUNT];
+        for (int id = 0; id < genomes.length; id++) genomes[id] = (byte) id;
+        double[] fitness = runLockstep(genomes, genomes.length, mazes.getMazes());
+        for (int id = 0; id < genomes.length; id++) cache.store(id, fitness[id]);
+    }
+
+    // A population holds at most GENOME_COUNT distinct genomes, so each one marked present is run
+    // once and its score is shared by every individual that carries it. Genomes already in the
+    // cache are not rerun. Returns fitness indexed by genome id.
+    private double[] evaluateGenomes(boolean[] present, MazePool mazes) {
+        double[] fitnessOf = new double[Strategy.GENOME_COUNT];
+        byte[] genomes = new byte[Strategy.GENOME_COUNT];
+        int count = 0;
+        for (int id = 0; id < present.length; id++) {
+            if (!present[id]) continue;
+            double cached = cache == null ? Double.NaN : cache.lookup(id);
+            if (Double.isNaN(cached)) genomes[count++] = (byte) id;
+            else fitnessOf[id] = cached;
+        }
+        if (count > 0) {
+            double[] fitness = runLockstep(genomes, count, mazes.getMazes());
+            for (int s = 0; s < count; s++) {
+                int id = genomes[s] & 0xFF;
+                fitnessOf[id] = fitness[s];
+                if (cache != null) cache.store(id, fitness[s]);
+            }
+        }
+        return fitnessOf;
+    }
+
+    // Mean score of each genome over the mazes. Mazes are run in parallel, each into its own row,
+    // and the rows are summed in maze order so the result matches FitnessEvaluator exactly.
+    private double[] runLockstep(byte[] genomes, int count, List<Maze> mazes) {
+        if (scorer != null) return scorer.score(genomes, count, mazes);
+        double[][] totals = new double[mazes.size()][count];
+        if (pool == null) lockstepRange(genomes, count, mazes, totals, 0, mazes.size());
+        else pool.invoke(new LockstepTask(genomes, count, mazes, totals, 0, mazes.size()));
+        double[] fitness = new double[count];
+        for (int g = 0; g < count; g++) {
+            double total = 0;
+            for (double[] row : totals) total += row[g];
+            fitness[g] = total / mazes.size();
+        }
+        return fitness;
+    }
+
+    private static void lockstepRange(byte[] genomes, int count, List<Maze> mazes, double[][] totals, int from, int to) {
+        LockstepSimulation sim = LOCKSTEP.get();
+        for (int m = from; m < to; m++) sim.evaluate(genomes, count, mazes.get(m), totals[m]);
+    }
+
+    private static class EvaluateTask extends RecursiveAction {
+        private final IntConsumer action;
+        private final int from, to;
+
+        EvaluateTask(IntConsumer action, int from, int to) {
+            this.action = action;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= CHUNK_SIZE) {
+                for (int i = from; i < to; i++) action.accept(i);
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new EvaluateTask(action, from, mid), new EvaluateTask(action, mid, to));
+        }
+    }
+
+    private static class LockstepTask extends RecursiveAction {
+        private final byte[] genomes;
+        private final int count;
+        private final List<Maze> mazes;
+        private final double[][] totals;
+        private final int from, to;
+
+        LockstepTask(byte[] genomes, int count, List<Maze> mazes, double[][] totals, int from, int to) {
+            this.genomes = genomes;
+            this.count = count;
+            this.mazes = mazes;
+            this.totals = totals;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= 1) {
+                lockstepRange(genomes, count, mazes, totals, from, to);
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new LockstepTask(genomes, count, mazes, totals, from, mid),
+                    new LockstepTask(genomes, count, mazes, totals, mid, to));
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package edu.penzgtu.evolution;
+
+import edu.penzgtu.model.Maze;
+import edu.penzgtu.model.ObstacleSchedule;
+
+import java.util.Locale;
+
+// What an agent can perceive each tick. A reading is an unsigned number of `bits` bits.
+public enum Sensor {
+    // 1 when a wall is in front, to the right or to the left of the agent.
+    FRONT(1), RIGHT(1), LEFT(1),
+    // The cell in front on the next tick: 0 free of obstacles, 1 an obstacle that is not red,
+    // 2 a red obstacle. Makes the walk depend on time, so runs are not cut short by loop detection.
+    OBSTACLE(2),
+    // Where the goal lies along the axis of its larger offset, relative to the heading:
+    // 0 ahead, 1 right, 2 behind, 3 left.
+    GOAL(2);
+
+    private static final int[] DX = {0, 1, 0, -1};
+    private static final int[] DY = {-1, 0, 1, 0};
+
+    final int bits;
+
+    Sensor(int bits) {
+        this.bits = bits;
+    }
+
+    public int getBits() { return bits; }
+
+    public String label() { return name().toLowerCase(Locale.ROOT); }
+
+    public static Sensor parse(String label) {
+        for (Sensor s : values()) if (s.label().equals(label.trim().toLowerCase(Locale.ROOT))) return s;
+        throw new IllegalArgumentException("Unknown sensor: " + label);
+    }
+
+    // Directions: 0 = up, 1 = right, 2 = down, 3 = left. `tick` is the number of steps taken so far.
+    int read(Maze maze, ObstacleSchedule schedule, int x, int y, int dir, int tick) {
+        switch (this) {
+            case FRONT: return blocked(maze, x, y, dir);
+            case RIGHT: return blocked(maze, x, y, (dir + 1) & 3);
+            case LEFT: return blocked(maze, x, y, (dir + 3) & 3);
+            case OBSTACLE: {
+                int nx = x + DX[dir], ny = y + DY[dir];
+                if (maze.isWall(nx, ny)) return 0;
+                int cell = maze.index(nx, ny);
+                if (schedule.isLethal(cell, tick + 1)) return 2;
+                return schedule.isOccupied(cell, tick + 1) ? 1 : 0;
+            }
+            default: {
+                int dx = maze.getGoalX() - x, dy = maze.getGoalY() - y;
+                int goalDir = Math.abs(dx) >= Math.abs(dy) ? (dx > 0 ? 1 : 3) : (dy > 0 ? 2 : 0);
+                return (goalDir - dir) & 3;
+            }
+        }
+    }
+
+    private static int blocked(Maze maze, int x, int y, int dir) {
+        return maze.isWall(x + DX[dir], y + DY[dir]) ? 1 : 0;
+    }
+}
@@ -0,0 +1,78 @@
+package edu.penzgtu.evolution;
+
+import edu.penzgtu.model.Maze;
+import edu.penzgtu.model.ObstacleSchedule;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.StringJoiner;
+
+// The sensors a strategy reads, in Sensor order. Their readings are packed into one index,
+// the first sensor in the highest bits, which selects an entry of the strategy's action table.
+// Sets are interned, so they can be compared with ==.
+public final class SensorSet {
+    private static final SensorSet[] SETS = new SensorSet[1 << Sensor.values().length];
+
+    // Front and right walls, the original two sensors. Index = front << 1 | right.
+    public static final SensorSet DEFAULT = of(Sensor.FRONT, Sensor.RIGHT);
+
+    private final int mask;
+    private final Sensor[] sensors;
+    private final int bits;
+    private final boolean timeDependent;
+
+    private SensorSet(int mask) {
+        this.mask = mask;
+        List<Sensor> list = new ArrayList<>();
+        int total = 0;
+        for (Sensor s : Sensor.values()) {
+            if ((mask & (1 << s.ordinal())) == 0) continue;
+            list.add(s);
+            total += s.bits;
+        }
+        this.sensors = list.toArray(new Sensor[0]);
+        this.bits = total;
+        this.timeDependent = list.contains(Sensor.OBSTACLE);
+    }
+
+    public static SensorSet of(Sensor... sensors) {
+        int mask = 0;
+        for (Sensor s : sensors) mask |= 1 << s.ordinal();
+        return fromMask(mask);
+    }
+
+    public static synchronized SensorSet fromMask(int mask) {
+        if (mask <= 0 || mask >= SETS.length) throw new IllegalArgumentException("Invalid sensor mask: " + mask);
+        if (SETS[mask] == null) SETS[mask] = new SensorSet(mask);
+        return SETS[mask];
+    }
+
+    // Comma-separated sensor labels, e.g. "front,right,goal".
+    public static SensorSet parse(String labels) {
+        int mask = 0;
+        for (String label : labels.split(",")) mask |= 1 << Sensor.parse(label).ordinal();
+        return fromMask(mask);
+    }
+
+    public int getMask() { return mask; }
+
+    public int getBits() { return bits; }
+
+    public int getTableSize() { return 1 << bits; }
+
+    // True when readings depend on the tick as well as the agent's cell and heading.
+    public boolean isTimeDependent() { return timeDependent; }
+
+    public int read(Maze maze, ObstacleSchedule schedule, int x, int y, int dir, int tick) {
+        int index = 0;
+        for (Sensor s : sensors) index = (index << s.bits) | s.read(maze, schedule, x, y, dir, tick);
+        return index;
+    }
+
+    @Override
+    public String toString() {
+        StringJoiner joiner = new StringJoiner(",");
+        for (Sensor s : sensors) joiner.add(s.label());
+        return joiner.toString();
+    }
+}
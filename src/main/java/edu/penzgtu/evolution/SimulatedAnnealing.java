@@ -1,35 +1,60 @@
 package edu.penzgtu.evolution;
 
-import edu.penzgtu.util.MazeGenerator;
+import edu.penzgtu.util.MazePool;
+import edu.penzgtu.util.RandomSource;
 
-import java.util.Random;
+import java.util.Collections;
+import java.util.List;
+import java.util.SplittableRandom;
 
 public class SimulatedAnnealing implements EvolutionaryAlgorithm {
     private Individual current;
     private double temperature;
     private double coolingRate;
-    private final Random rand = new Random();
+    private final RandomSource random;
+    private final PopulationEvaluator evaluator;
+    private SensorSet sensors;
+    private MazePool mazes;
+    private int generation;
+
+    public SimulatedAnnealing() {
+        this(PopulationEvaluator.sequential(), new RandomSource(System.nanoTime()));
+    }
+
+    public SimulatedAnnealing(PopulationEvaluator evaluator, RandomSource random) {
+        this(evaluator, random, SensorSet.DEFAULT);
+    }
+
+    public SimulatedAnnealing(PopulationEvaluator evaluator, RandomSource random, SensorSet sensors) {
+        this.evaluator = evaluator;
+        this.random = random;
+        this.sensors = sensors;
+    }
 
     @Override
     public void initialize(int populationSize) {
-        current = new Individual(new Strategy());
-        current.setFitness(FitnessEvaluator.evaluate(current.getStrategy(), new MazeGenerator()));
+        generation = 0;
+        current = new Individual(new Strategy(sensors, random.stream("sa.init")));
         temperature = 1000;
         coolingRate = 0.003;
     }
 
     @Override
-    public void evaluate(MazeGenerator generator) {
+    public void evaluate(MazePool mazes) {
+        this.mazes = mazes;
+        current.setFitness(evaluator.evaluate(current.getStrategy(), mazes));
     }
 
     @Override
     public void evolve() {
+        SplittableRandom rand = random.stream("sa.evolve", generation++);
         Strategy candidateStrat = current.getStrategy().copy();
-        for (int i = 0; i < candidateStrat.getGenes().length; i++) {
-            if (rand.nextDouble() < 0.1) candidateStrat.getGenes()[i] = Action.values()[rand.nextInt(Action.values().length)];
+        byte[] table = candidateStrat.getTable();
+        for (int i = 0; i < table.length; i++) {
+            if (rand.nextDouble() < 0.1) table[i] = (byte) rand.nextInt(Action.COUNT);
         }
         Individual candidate = new Individual(candidateStrat);
-        candidate.setFitness(FitnessEvaluator.evaluate(candidateStrat, new MazeGenerator()));
+        candidate.setFitness(evaluator.evaluate(candidateStrat, mazes));
         double delta = candidate.getFitness() - current.getFitness();
         if (delta > 0 || Math.exp(delta / temperature) > rand.nextDouble()) {
             current = candidate;
@@ -41,4 +66,24 @@ public class SimulatedAnnealing implements EvolutionaryAlgorithm {
     public Individual getBest() {
         return current;
     }
+
+    @Override
+    public List<Individual> getPopulation() {
+        return Collections.singletonList(current);
+    }
+
+    @Override
+    public AlgorithmState saveState() {
+        return AlgorithmState.of(generation, 1, sensors, Collections.singletonList(current), temperature, coolingRate);
+    }
+
+    @Override
+    public void restoreState(AlgorithmState state) {
+        if (state.size() != 1) throw new IllegalArgumentException("Expected one individual, state has " + state.size());
+        generation = state.getGeneration();
+        sensors = state.getSensors();
+        current = state.toPopulation().get(0);
+        temperature = state.parameter(0);
+        coolingRate = state.parameter(1);
+    }
 }
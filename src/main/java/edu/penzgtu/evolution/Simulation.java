@@ -0,0 +1,160 @@
+package edu.penzgtu.evolution;
+
+import edu.penzgtu.model.Maze;
+import edu.penzgtu.model.ObstacleSchedule;
+
+// The one agent step loop, shared by fitness scoring and playback. The agent lives in primitive
+// fields and obstacles are looked up in the maze's precomputed schedule, so an instance can be
+// reset and run any number of times without allocating. Instances are not thread-safe.
+public final class Simulation {
+    public static final int START_DIRECTION = 1; // RIGHT
+
+    // Directions: 0 = up, 1 = right, 2 = down, 3 = left.
+    private static final int[] DX = {0, 1, 0, -1};
+    private static final int[] DY = {-1, 0, 1, 0};
+    // Action ordinals.
+    private static final int FORWARD = 0, TURN_LEFT = 1, TURN_RIGHT = 2, STOP = 3;
+
+    public enum Status { RUNNING, GOAL, DEAD, STOPPED }
+
+    private Maze maze;
+    private ObstacleSchedule schedule;
+    private int x, y, direction, steps;
+    // Ticks actually stepped; steps runs ahead of it when a cycle is fast-forwarded.
+    private int executed;
+    private Status status = Status.RUNNING;
+
+    // Loop detection: a bit per (cell, direction) state and the states of the current run in order.
+    private long[] visited = new long[0];
+    private int[] trail = new int[0];
+
+    public void reset(Maze maze) {
+        this.maze = maze;
+        schedule = maze.getObstacleSchedule();
+        x = maze.getStartX();
+        y = maze.getStartY();
+        direction = START_DIRECTION;
+        steps = 0;
+        executed = 0;
+        status = maze.isGoal(x, y) ? Status.GOAL : Status.RUNNING;
+    }
+
+    // Runs until the agent reaches the goal, dies, stops or uses up maxSteps. Unless the strategy
+    // senses obstacles, the walk does not depend on them: once the agent repeats an (x, y, direction)
+    // state it cycles forever. The remaining ticks are then replayed from the recorded cycle, only
+    // checking whether an obstacle is red under the agent, which gives the same end state as stepping.
+    public Status run(Strategy strategy, int maxSteps) {
+        return run(strategy.getSensors(), strategy.getTable(), 0, maxSteps);
+    }
+
+    // Runs the action table at `offset` of a flat array of tables, as stored by Population.
+    public Status run(SensorSet sensors, byte[] tables, int offset, int maxSteps) {
+        if (sensors.isTimeDependent()) {
+            while (status == Status.RUNNING && steps < maxSteps) step(sensors, tables, offset);
+            return status;
+        }
+        int words = (maze.getWidth() * maze.getHeight() * 4 + 63) >>> 6;
+        if (visited.length < words) visited = new long[words];
+        int budget = Math.max(0, maxSteps - steps);
+        if (trail.length <= budget) trail = new int[budget + 1];
+
+        int base = steps, length = 0;
+        try {
+            trail[length++] = state();
+            Maze.setBit(visited, trail[0], true);
+            while (status == Status.RUNNING && steps < maxSteps) {
+                step(sensors, tables, offset);
+                if (status != Status.RUNNING) break;
+                int state = state();
+                if (Maze.getBit(visited, state)) {
+                    finishCycle(state, base, length, maxSteps);
+                    break;
+                }
+                Maze.setBit(visited, state, true);
+                trail[length++] = state;
+            }
+        } finally {
+            for (int i = 0; i < length; i++) Maze.setBit(visited, trail[i], false);
+        }
+        return status;
+    }
+
+    // trail[k] is the state after base + k steps; the current state first appeared at trail[start].
+    private void finishCycle(int state, int base, int length, int maxSteps) {
+        int start = length - 1;
+        while (trail[start] != state) start--;
+        int cycle = length - start;
+
+        boolean lethal = false;
+        for (int k = start; k < length && !lethal; k++) lethal = schedule.isEverLethal(trail[k] >>> 2);
+        if (lethal) {
+            for (int t = steps + 1; t <= maxSteps; t++) {
+                int s = trail[start + (t - base - start) % cycle];
+                if (schedule.isLethal(s >>> 2, t)) {
+                    restore(s, t);
+                    status = Status.DEAD;
+                    return;
+                }
+            }
+        }
+        if (maxSteps > steps) restore(trail[start + (maxSteps - base - start) % cycle], maxSteps);
+    }
+
+    private int state() {
+        return (maze.index(x, y) << 2) | direction;
+    }
+
+    private void restore(int state, int tick) {
+        int cell = state >>> 2;
+        x = cell % maze.getWidth();
+        y = cell / maze.getWidth();
+        direction = state & 3;
+        steps = tick;
+    }
+
+    // One tick: obstacles move first, then the agent acts on what its sensors see.
+    public void step(Strategy strategy) {
+        step(strategy.getSensors(), strategy.getTable(), 0);
+    }
+
+    private void step(SensorSet sensors, byte[] tables, int offset) {
+        if (status != Status.RUNNING) return;
+
+        switch (tables[offset + sensors.read(maze, schedule, x, y, direction, steps)]) {
+            case FORWARD:
+                if (!maze.isWall(x + DX[direction], y + DY[direction])) {
+                    x += DX[direction];
+                    y += DY[direction];
+                }
+                break;
+            case TURN_LEFT:
+                direction = (direction + 3) & 3;
+                break;
+            case TURN_RIGHT:
+                direction = (direction + 1) & 3;
+                break;
+            case STOP:
+                status = Status.STOPPED;
+                break;
+        }
+        steps++;
+        executed++;
+
+        if (maze.isGoal(x, y)) status = Status.GOAL;
+        else if (schedule.isLethal(maze.index(x, y), steps)) status = Status.DEAD;
+    }
+
+    public Maze getMaze() { return maze; }
+    public int getX() { return x; }
+    public int getY() { return y; }
+    public int getDirection() { return direction; }
+    public int getSteps() { return steps; }
+    public int getExecutedSteps() { return executed; }
+    public Status getStatus() { return status; }
+    public boolean isRunning() { return status == Status.RUNNING; }
+
+    public int getObstacleCount() { return schedule.getObstacleCount(); }
+    public int getObstacleX(int i) { return schedule.cellOf(i, steps) % maze.getWidth(); }
+    public int getObstacleY(int i) { return schedule.cellOf(i, steps) / maze.getWidth(); }
+    public int getObstaclePhase(int i) { return schedule.phaseOf(i, steps); }
+}
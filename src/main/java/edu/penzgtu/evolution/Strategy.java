@@ -1,23 +1,67 @@
 package edu.penzgtu.evolution;
 
 import java.util.Arrays;
-import java.util.Random;
+import java.util.SplittableRandom;
 
+// An action table indexed by packed sensor readings: deciding is one array load however many
+// sensors the set has. The table holds Action ordinals and is shared with whoever edits it.
 public class Strategy {
-    private final Action[] genes;
-    public Strategy() {
-        genes = new Action[4];
-        Random rand = new Random();
-        for (int i = 0; i < genes.length; i++) {
-            genes[i] = Action.values()[rand.nextInt(Action.values().length)];
+    // Distinct strategies over the default sensor set; these have packed ids.
+    public static final int GENOME_COUNT = 256;
+
+    private final SensorSet sensors;
+    private final byte[] table;
+
+    public Strategy(SplittableRandom rand) {
+        this(SensorSet.DEFAULT, rand);
+    }
+
+    public Strategy(SensorSet sensors, SplittableRandom rand) {
+        this.sensors = sensors;
+        this.table = new byte[sensors.getTableSize()];
+        for (int i = 0; i < table.length; i++) table[i] = (byte) rand.nextInt(Action.COUNT);
+    }
+
+    public Strategy(SensorSet sensors, byte[] table) {
+        if (table.length != sensors.getTableSize()) {
+            throw new IllegalArgumentException("Table has " + table.length + " entries, sensors " + sensors + " need " + sensors.getTableSize());
         }
+        this.sensors = sensors;
+        this.table = Arrays.copyOf(table, table.length);
     }
-    public Strategy(Action[] genes) { this.genes = Arrays.copyOf(genes, genes.length); }
-    public Action chooseAction(boolean frontFree, boolean rightFree) {
-        int idx = (frontFree ? 0 : 2) + (rightFree ? 0 : 1);
-        return genes[idx];
+
+    // Copies the table at `offset` of a flat array of tables.
+    Strategy(SensorSet sensors, byte[] tables, int offset) {
+        this.sensors = sensors;
+        this.table = Arrays.copyOfRange(tables, offset, offset + sensors.getTableSize());
     }
-    public Action[] getGenes() { return genes; }
-    public Strategy copy() { return new Strategy(genes); }
-}
 
+    public SensorSet getSensors() { return sensors; }
+
+    // Action ordinal for a packed sensor index.
+    public int action(int index) { return table[index]; }
+
+    public byte[] getTable() { return table; }
+
+    public Strategy copy() { return new Strategy(sensors, table); }
+
+    // Whether genomeId() applies: the default sensor set, whose four genes fit in a byte.
+    public boolean isPacked() { return sensors == SensorSet.DEFAULT; }
+
+    // Four genes of two bits each: gene i occupies bits 2i and 2i+1.
+    public int genomeId() {
+        if (!isPacked()) throw new IllegalStateException("Packed ids only cover the default sensor set, not " + sensors);
+        return genomeId(table, 0);
+    }
+
+    // Packed id of a default-set table stored at `offset`.
+    static int genomeId(byte[] tables, int offset) {
+        return tables[offset] | tables[offset + 1] << 2 | tables[offset + 2] << 4 | tables[offset + 3] << 6;
+    }
+
+    public static Strategy fromGenomeId(int id) {
+        byte[] table = new byte[SensorSet.DEFAULT.getTableSize()];
+        for (int i = 0; i < table.length; i++) table[i] = (byte) ((id >>> (2 * i)) & 3);
+        return new Strategy(SensorSet.DEFAULT, table);
+    }
+}
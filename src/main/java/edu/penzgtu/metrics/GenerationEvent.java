@@ -0,0 +1,28 @@
+package edu.penzgtu.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+@Name("edu.penzgtu.Generation")
+@Label("Generation")
+@Category({"Maze Game", "Evolution"})
+public final class GenerationEvent extends jdk.jfr.Event {
+    @Label("Generation")
+    public int generation;
+
+    @Label("Evaluate Time")
+    @Timespan(Timespan.NANOSECONDS)
+    public long evaluateTime;
+
+    @Label("Evolve Time")
+    @Timespan(Timespan.NANOSECONDS)
+    public long evolveTime;
+
+    @Label("Steps Simulated")
+    public long steps;
+
+    @Label("Mazes Generated")
+    public long mazesGenerated;
+}
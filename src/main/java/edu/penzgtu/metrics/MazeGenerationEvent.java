@@ -0,0 +1,22 @@
+package edu.penzgtu.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("edu.penzgtu.MazeGeneration")
+@Label("Maze Generation")
+@Category({"Maze Game", "Mazes"})
+@Description("One call to MazeGenerator.generateValidMaze")
+public final class MazeGenerationEvent extends jdk.jfr.Event {
+    @Label("Attempts")
+    @Description("Layouts carved before one was accepted")
+    public int attempts;
+
+    @Label("Repairs")
+    public int repairs;
+
+    @Label("Obstacle Placements")
+    public int obstaclePlacements;
+}
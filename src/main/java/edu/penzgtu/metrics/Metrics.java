@@ -0,0 +1,154 @@
+package edu.penzgtu.metrics;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Locale;
+import java.util.concurrent.atomic.LongAdder;
+
+// Process-wide counters for the hot paths. Each record call is a few uncontended LongAdder adds, so
+// the counters stay on in normal runs; the matching JFR events cost nothing unless a recording has
+// them enabled.
+public final class Metrics implements MetricsMXBean {
+    public static final Metrics INSTANCE = new Metrics();
+    public static final String OBJECT_NAME = "edu.penzgtu:type=Metrics";
+
+    private final LongAdder generations = new LongAdder();
+    private final LongAdder evaluateNanos = new LongAdder();
+    private final LongAdder evolveNanos = new LongAdder();
+    private final LongAdder mazes = new LongAdder();
+    private final LongAdder attempts = new LongAdder();
+    private final LongAdder repairs = new LongAdder();
+    private final LongAdder placements = new LongAdder();
+    private final LongAdder generationNanos = new LongAdder();
+    private final LongAdder searches = new LongAdder();
+    private final LongAdder nodes = new LongAdder();
+    private final LongAdder searchNanos = new LongAdder();
+    private final LongAdder runs = new LongAdder();
+    private final LongAdder steps = new LongAdder();
+    private final LongAdder skipped = new LongAdder();
+
+    // Totals at the previous generation boundary, for the per-generation deltas.
+    private long stepsMark, mazesMark;
+    private volatile int lastGeneration = -1;
+    private volatile long lastEvaluateNanos, lastEvolveNanos, lastSteps, lastMazes;
+
+    private Metrics() {}
+
+    // Registers INSTANCE with the platform MBean server; later calls do nothing.
+    public static synchronized void register() {
+        try {
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (!ManagementFactory.getPlatformMBeanServer().isRegistered(name)) {
+                ManagementFactory.getPlatformMBeanServer().registerMBean(INSTANCE, name);
+            }
+        } catch (JMException e) {
+            throw new IllegalStateException("Could not register " + OBJECT_NAME, e);
+        }
+    }
+
+    public static void recordMazeGeneration(int attemptCount, int repairCount, int placementCount, long nanos) {
+        INSTANCE.mazes.increment();
+        INSTANCE.attempts.add(attemptCount);
+        INSTANCE.repairs.add(repairCount);
+        INSTANCE.placements.add(placementCount);
+        INSTANCE.generationNanos.add(nanos);
+    }
+
+    public static void recordPathSearch(int nodesExpanded, long nanos) {
+        INSTANCE.searches.increment();
+        INSTANCE.nodes.add(nodesExpanded);
+        INSTANCE.searchNanos.add(nanos);
+    }
+
+    // stepCount is the ticks actually simulated; skippedCount the ticks loop detection jumped over.
+    public static void recordSimulation(int agentRuns, long stepCount, long skippedCount) {
+        INSTANCE.runs.add(agentRuns);
+        INSTANCE.steps.add(stepCount);
+        INSTANCE.skipped.add(skippedCount);
+    }
+
+    // Called by the driver loop once per generation with its phase timings.
+    public static void recordGeneration(int generation, long evaluate, long evolve) {
+        INSTANCE.generation(generation, evaluate, evolve);
+    }
+
+    private synchronized void generation(int generation, long evaluate, long evolve) {
+        generations.increment();
+        evaluateNanos.add(evaluate);
+        evolveNanos.add(evolve);
+        long stepTotal = steps.sum(), mazeTotal = mazes.sum();
+        lastSteps = stepTotal - stepsMark;
+        lastMazes = mazeTotal - mazesMark;
+        stepsMark = stepTotal;
+        mazesMark = mazeTotal;
+        lastEvaluateNanos = evaluate;
+        lastEvolveNanos = evolve;
+        lastGeneration = generation;
+
+        GenerationEvent event = new GenerationEvent();
+        if (event.shouldCommit()) {
+            event.generation = generation;
+            event.evaluateTime = evaluate;
+            event.evolveTime = evolve;
+            event.steps = lastSteps;
+            event.mazesGenerated = lastMazes;
+            event.commit();
+        }
+    }
+
+    @Override public long getGenerationCount() { return generations.sum(); }
+    @Override public int getLastGeneration() { return lastGeneration; }
+    @Override public double getLastEvaluateMillis() { return lastEvaluateNanos / 1e6; }
+    @Override public double getLastEvolveMillis() { return lastEvolveNanos / 1e6; }
+    @Override public double getAverageEvaluateMillis() { return ratio(evaluateNanos.sum() / 1e6, generations.sum()); }
+    @Override public double getAverageEvolveMillis() { return ratio(evolveNanos.sum() / 1e6, generations.sum()); }
+
+    @Override public long getMazesGenerated() { return mazes.sum(); }
+    @Override public long getMazeGenerationAttempts() { return attempts.sum(); }
+    @Override public double getAttemptsPerMaze() { return ratio(attempts.sum(), mazes.sum()); }
+    @Override public long getMazeRepairs() { return repairs.sum(); }
+    @Override public long getObstaclePlacements() { return placements.sum(); }
+    @Override public double getPathChecksPerMaze() {
+        return ratio(attempts.sum() + repairs.sum() + placements.sum(), mazes.sum());
+    }
+    @Override public double getAverageMazeGenerationMillis() { return ratio(generationNanos.sum() / 1e6, mazes.sum()); }
+    @Override public long getLastGenerationMazes() { return lastMazes; }
+
+    @Override public long getPathSearches() { return searches.sum(); }
+    @Override public long getNodesExpanded() { return nodes.sum(); }
+    @Override public double getAverageNodesPerSearch() { return ratio(nodes.sum(), searches.sum()); }
+    @Override public double getAveragePathSearchMicros() { return ratio(searchNanos.sum() / 1e3, searches.sum()); }
+
+    @Override public long getSimulationRuns() { return runs.sum(); }
+    @Override public long getStepsSimulated() { return steps.sum(); }
+    @Override public long getStepsSkipped() { return skipped.sum(); }
+    @Override public long getLastGenerationSteps() { return lastSteps; }
+
+    @Override
+    public synchronized void reset() {
+        for (LongAdder a : new LongAdder[]{generations, evaluateNanos, evolveNanos, mazes, attempts, repairs, placements, generationNanos,
+                searches, nodes, searchNanos, runs, steps, skipped}) {
+            a.reset();
+        }
+        stepsMark = mazesMark = 0;
+        lastGeneration = -1;
+        lastEvaluateNanos = lastEvolveNanos = lastSteps = lastMazes = 0;
+    }
+
+    private static double ratio(double total, long count) {
+        return count == 0 ? 0 : total / count;
+    }
+
+    public String summary() {
+        return String.format(Locale.ROOT,
+                "generations: %d, %.3f ms evaluate, %.3f ms evolve on average%n"
+                        + "maze generation: %d mazes, %.2f attempts, %.2f path checks, %.3f ms per maze%n"
+                        + "pathfinding: %d searches, %.1f nodes expanded per search, %.1f us per search%n"
+                        + "simulation: %d agent runs, %d steps, %.1f steps per run, %d more skipped by loop detection",
+                getGenerationCount(), getAverageEvaluateMillis(), getAverageEvolveMillis(),
+                getMazesGenerated(), getAttemptsPerMaze(), getPathChecksPerMaze(), getAverageMazeGenerationMillis(),
+                getPathSearches(), getAverageNodesPerSearch(), getAveragePathSearchMicros(),
+                getSimulationRuns(), getStepsSimulated(), ratio(getStepsSimulated(), getSimulationRuns()), getStepsSkipped());
+    }
+}
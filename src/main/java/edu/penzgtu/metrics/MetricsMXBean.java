@@ -0,0 +1,33 @@
+package edu.penzgtu.metrics;
+
+// JMX view of Metrics, registered as edu.penzgtu:type=Metrics. "Last" values cover the most recently
+// recorded generation; the rest are totals since start or the last reset.
+public interface MetricsMXBean {
+    long getGenerationCount();
+    int getLastGeneration();
+    double getLastEvaluateMillis();
+    double getLastEvolveMillis();
+    double getAverageEvaluateMillis();
+    double getAverageEvolveMillis();
+
+    long getMazesGenerated();
+    long getMazeGenerationAttempts();
+    double getAttemptsPerMaze();
+    long getMazeRepairs();
+    long getObstaclePlacements();
+    double getPathChecksPerMaze();
+    double getAverageMazeGenerationMillis();
+    long getLastGenerationMazes();
+
+    long getPathSearches();
+    long getNodesExpanded();
+    double getAverageNodesPerSearch();
+    double getAveragePathSearchMicros();
+
+    long getSimulationRuns();
+    long getStepsSimulated();
+    long getStepsSkipped();
+    long getLastGenerationSteps();
+
+    void reset();
+}
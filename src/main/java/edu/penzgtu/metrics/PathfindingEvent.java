@@ -0,0 +1,22 @@
+package edu.penzgtu.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("edu.penzgtu.Pathfinding")
+@Label("Pathfinding")
+@Category({"Maze Game", "Mazes"})
+@Description("One call to Pathfinding.aStarPathfinding")
+@StackTrace(false)
+public final class PathfindingEvent extends jdk.jfr.Event {
+    @Label("Nodes Expanded")
+    @Description("States taken off the open list, over every search the call ran")
+    public int nodesExpanded;
+
+    @Label("Path Length")
+    @Description("Steps of the path found, -1 if the goal is unreachable")
+    public int pathLength;
+}
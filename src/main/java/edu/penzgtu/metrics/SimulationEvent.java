@@ -0,0 +1,28 @@
+package edu.penzgtu.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("edu.penzgtu.Simulation")
+@Label("Simulation")
+@Category({"Maze Game", "Evaluation"})
+@Description("Agents run on mazes to score them: one strategy on a maze pool, or a lockstep batch on one maze")
+@StackTrace(false)
+public final class SimulationEvent extends jdk.jfr.Event {
+    @Label("Agents")
+    public int agents;
+
+    @Label("Mazes")
+    public int mazes;
+
+    @Label("Steps")
+    @Description("Agent steps simulated")
+    public long steps;
+
+    @Label("Skipped Steps")
+    @Description("Agent steps fast-forwarded by loop detection")
+    public long skippedSteps;
+}
@@ -1,12 +0,0 @@
-package edu.penzgtu.model;
-
-public class Agent {
-    public int x, y;
-    public int direction;
-
-    public Agent(int x, int y, int direction) {
-        this.x = x;
-        this.y = y;
-        this.direction = direction;
-    }
-}
\ No newline at end of file
@@ -0,0 +1,105 @@
+package edu.penzgtu.model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+public final class Maze {
+    private final MazeConfig config;
+    private final int width, height;
+    private final long[] walls;
+    private final int startX, startY;
+    private final int goalX, goalY;
+    private final List<Obstacle> obstacles;
+    private final int pathLength;
+    private volatile ObstacleSchedule schedule;
+
+    // Takes ownership of `walls`: one bit per cell, index y * width + x, set for walls.
+    public Maze(MazeConfig config, long[] walls) {
+        this(config, walls, Collections.emptyList(), -1);
+    }
+
+    private Maze(MazeConfig config, long[] walls, List<Obstacle> obstacles, int pathLength) {
+        if (walls.length < words(config.getWidth() * config.getHeight())) {
+            throw new IllegalArgumentException("Wall bitset too short for " + config.getWidth() + "x" + config.getHeight());
+        }
+        this.config = config;
+        this.width = config.getWidth();
+        this.height = config.getHeight();
+        this.walls = walls;
+        this.startX = config.getStartX();
+        this.startY = config.getStartY();
+        this.goalX = config.getGoalX();
+        this.goalY = config.getGoalY();
+        this.obstacles = obstacles;
+        this.pathLength = pathLength;
+    }
+
+    public static long[] newBitset(int width, int height) { return new long[words(width * height)]; }
+
+    public static boolean getBit(long[] bits, int index) { return (bits[index >>> 6] & (1L << index)) != 0; }
+
+    public static void setBit(long[] bits, int index, boolean value) {
+        if (value) bits[index >>> 6] |= 1L << index;
+        else bits[index >>> 6] &= ~(1L << index);
+    }
+
+    private static int words(int bits) { return (bits + 63) >>> 6; }
+
+    // Copy-on-write: the wall bitset is shared, only the obstacle list is new. New obstacles can
+    // change the path, so its length is unknown again.
+    public Maze withObstacles(List<Obstacle> obstacles) {
+        if (obstacles.isEmpty()) return new Maze(config, walls, Collections.emptyList(), -1);
+        List<Obstacle> copy = new ArrayList<>(obstacles.size());
+        for (Obstacle ob : obstacles) copy.add(copyOf(ob));
+        return new Maze(config, walls, Collections.unmodifiableList(copy), -1);
+    }
+
+    // Same maze, recording the turn-weighted length of its shortest safe path as found by whoever
+    // already searched it, so later users need not search again.
+    public Maze withPathLength(int pathLength) {
+        return new Maze(config, walls, obstacles, pathLength);
+    }
+
+    public MazeConfig getConfig() { return config; }
+    public int getWidth() { return width; }
+    public int getHeight() { return height; }
+    public int getStartX() { return startX; }
+    public int getStartY() { return startY; }
+    public int getGoalX() { return goalX; }
+    public int getGoalY() { return goalY; }
+
+    public int index(int x, int y) { return y * width + x; }
+
+    public boolean inBounds(int x, int y) { return x >= 0 && x < width && y >= 0 && y < height; }
+
+    public boolean isWall(int x, int y) { return !inBounds(x, y) || getBit(walls, index(x, y)); }
+
+    public boolean isGoal(int x, int y) { return x == goalX && y == goalY; }
+
+    public boolean isStart(int x, int y) { return x == startX && y == startY; }
+
+    // Obstacle fields are public and mutable, so every caller gets its own copies and the maze's
+    // obstacles, which its schedule is built from, never change.
+    public List<Obstacle> getObstacles() {
+        List<Obstacle> copy = new ArrayList<>(obstacles.size());
+        for (Obstacle ob : obstacles) copy.add(copyOf(ob));
+        return copy;
+    }
+
+    public int getObstacleCount() { return obstacles.size(); }
+
+    // Turn-weighted shortest path length, or -1 when it was not recorded.
+    public int getPathLength() { return pathLength; }
+
+    // Built on first use; a racing thread at worst builds an identical copy.
+    public ObstacleSchedule getObstacleSchedule() {
+        ObstacleSchedule s = schedule;
+        if (s == null) schedule = s = new ObstacleSchedule(this);
+        return s;
+    }
+
+    private static Obstacle copyOf(Obstacle ob) {
+        return new Obstacle(ob.x, ob.y, ob.dx, ob.dy, ob.cycleOffset);
+    }
+}
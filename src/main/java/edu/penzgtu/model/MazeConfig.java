@@ -0,0 +1,71 @@
+package edu.penzgtu.model;
+
+public final class MazeConfig {
+    public static final int DEFAULT_MAX_STEPS = 200;
+    public static final MazeConfig DEFAULT = new MazeConfig(32, 32, 1, 1, 1, 30, 70, 150, 8);
+
+    private final int width, height;
+    private final int startX, startY;
+    private final int goalX, goalY;
+    private final int minSteps, maxPathLength;
+    private final int numObstacles;
+    private final int maxSteps;
+
+    public MazeConfig(int width, int height, int startX, int startY, int goalX, int goalY,
+                      int minSteps, int maxPathLength, int numObstacles) {
+        this(width, height, startX, startY, goalX, goalY, minSteps, maxPathLength, numObstacles, DEFAULT_MAX_STEPS);
+    }
+
+    // maxSteps is the agent's step budget when a strategy is run on mazes of this configuration.
+    public MazeConfig(int width, int height, int startX, int startY, int goalX, int goalY,
+                      int minSteps, int maxPathLength, int numObstacles, int maxSteps) {
+        if (width < 5 || height < 5) throw new IllegalArgumentException("Maze must be at least 5x5: " + width + "x" + height);
+        if ((long) width * height > Integer.MAX_VALUE / 8) throw new IllegalArgumentException("Maze too large: " + width + "x" + height);
+        if (!isInterior(startX, startY, width, height)) throw new IllegalArgumentException("Start must be an interior cell: " + startX + "," + startY);
+        if (!isInterior(goalX, goalY, width, height)) throw new IllegalArgumentException("Goal must be an interior cell: " + goalX + "," + goalY);
+        if (startX == goalX && startY == goalY) throw new IllegalArgumentException("Start and goal must differ");
+        if (minSteps < 0 || minSteps > maxPathLength) throw new IllegalArgumentException("Invalid path length window: " + minSteps + ".." + maxPathLength);
+        if (numObstacles < 0) throw new IllegalArgumentException("Obstacle count must not be negative: " + numObstacles);
+        if (maxSteps < 1) throw new IllegalArgumentException("Step budget must be positive: " + maxSteps);
+        this.width = width;
+        this.height = height;
+        this.startX = startX;
+        this.startY = startY;
+        this.goalX = goalX;
+        this.goalY = goalY;
+        this.minSteps = minSteps;
+        this.maxPathLength = maxPathLength;
+        this.numObstacles = numObstacles;
+        this.maxSteps = maxSteps;
+    }
+
+    // Start in the top-left and goal in the bottom-left corner, like the default layout.
+    public static MazeConfig of(int width, int height, int minSteps, int maxPathLength, int numObstacles) {
+        return new MazeConfig(width, height, 1, 1, 1, height - 2, minSteps, maxPathLength, numObstacles);
+    }
+
+    public MazeConfig withMaxSteps(int maxSteps) {
+        return new MazeConfig(width, height, startX, startY, goalX, goalY, minSteps, maxPathLength, numObstacles, maxSteps);
+    }
+
+    private static boolean isInterior(int x, int y, int width, int height) {
+        return x > 0 && x < width - 1 && y > 0 && y < height - 1;
+    }
+
+    public int getWidth() { return width; }
+    public int getHeight() { return height; }
+    public int getStartX() { return startX; }
+    public int getStartY() { return startY; }
+    public int getGoalX() { return goalX; }
+    public int getGoalY() { return goalY; }
+    public int getMinSteps() { return minSteps; }
+    public int getMaxPathLength() { return maxPathLength; }
+    public int getNumObstacles() { return numObstacles; }
+    public int getMaxSteps() { return maxSteps; }
+
+    @Override
+    public String toString() {
+        return width + "x" + height + " start=" + startX + "," + startY + " goal=" + goalX + "," + goalY
+                + " steps=" + minSteps + ".." + maxPathLength + " obstacles=" + numObstacles + " maxSteps=" + maxSteps;
+    }
+}
@@ -1,17 +0,0 @@
-package edu.penzgtu.model;
-
-import java.awt.*;
-import java.util.List;
-
-public class Node {
-    public int fScore, time;
-    public Point pos;
-    public List<Point> path;
-
-    public Node(int fScore, int time, Point pos, List<Point> path) {
-        this.fScore = fScore;
-        this.time = time;
-        this.pos = pos;
-        this.path = path;
-    }
-}
\ No newline at end of file
@@ -0,0 +1,156 @@
+package edu.penzgtu.model;
+
+import java.util.Arrays;
+import java.util.List;
+
+// Space-time occupancy of a maze's obstacles. Each obstacle bounces along a fixed segment and cycles
+// through CYCLE_LENGTH colours, so its track is periodic and is recorded once. When the joint period
+// of all obstacles is short enough, every tick of that period also gets dense bitmasks of occupied
+// and lethal cells; otherwise queries go through a per-cell index of the obstacles that ever pass it.
+// Tick t means the state after the obstacles have moved t times.
+public final class ObstacleSchedule {
+    public static final int CYCLE_LENGTH = 4; // yellow x2, orange, red
+    public static final int LETHAL_PHASE = CYCLE_LENGTH - 1;
+
+    private static final long MAX_DENSE_WORDS = 1 << 14;
+
+    private final int width, cells, words;
+    private final int obstacleCount;
+    private final int[][] tracks;
+    private final int[] phases;
+    private final long period;
+    private final long[] everLethal;
+
+    private final long[] occupied, lethal;
+    private final int[] cellStart, cellObstacles;
+
+    ObstacleSchedule(Maze maze) {
+        width = maze.getWidth();
+        cells = width * maze.getHeight();
+        words = (cells + 63) >>> 6;
+        List<Obstacle> obstacles = maze.getObstacles();
+        obstacleCount = obstacles.size();
+        tracks = new int[obstacleCount][];
+        phases = new int[obstacleCount];
+        everLethal = new long[words];
+
+        long joint = 1;
+        for (int i = 0; i < obstacleCount; i++) {
+            Obstacle ob = obstacles.get(i);
+            tracks[i] = trace(maze, ob);
+            phases[i] = ob.cycleOffset;
+            int own = (int) lcm(tracks[i].length, CYCLE_LENGTH);
+            for (int t = 0; t < own; t++) {
+                if (phaseOf(i, t) == LETHAL_PHASE) Maze.setBit(everLethal, tracks[i][t % tracks[i].length], true);
+            }
+            joint = lcm(joint, own);
+        }
+        period = joint;
+
+        if (period * words <= MAX_DENSE_WORDS) {
+            int ticks = (int) period;
+            occupied = new long[ticks * words];
+            lethal = new long[ticks * words];
+            for (int t = 0; t < ticks; t++) {
+                int base = t * words;
+                for (int i = 0; i < obstacleCount; i++) {
+                    int cell = cellOf(i, t);
+                    occupied[base + (cell >>> 6)] |= 1L << cell;
+                    if (phaseOf(i, t) == LETHAL_PHASE) lethal[base + (cell >>> 6)] |= 1L << cell;
+                }
+            }
+            cellStart = null;
+            cellObstacles = null;
+        } else {
+            occupied = null;
+            lethal = null;
+            cellStart = new int[cells + 1];
+            int[] seen = new int[cells];
+            Arrays.fill(seen, -1);
+            for (int i = 0; i < obstacleCount; i++) {
+                for (int cell : tracks[i]) {
+                    if (seen[cell] != i) { seen[cell] = i; cellStart[cell + 1]++; }
+                }
+            }
+            for (int c = 0; c < cells; c++) cellStart[c + 1] += cellStart[c];
+            cellObstacles = new int[cellStart[cells]];
+            int[] fill = Arrays.copyOf(cellStart, cells);
+            Arrays.fill(seen, -1);
+            for (int i = 0; i < obstacleCount; i++) {
+                for (int cell : tracks[i]) {
+                    if (seen[cell] != i) { seen[cell] = i; cellObstacles[fill[cell]++] = i; }
+                }
+            }
+        }
+    }
+
+    // Follows one obstacle until its position and heading repeat. The bounce rule is reversible,
+    // so the starting state always lies on the cycle.
+    private static int[] trace(Maze maze, Obstacle ob) {
+        int width = maze.getWidth(), height = maze.getHeight();
+        int x = ob.x, y = ob.y, dx = ob.dx, dy = ob.dy;
+        int[] track = new int[16];
+        int length = 0;
+        do {
+            if (length == track.length) track = Arrays.copyOf(track, length * 2);
+            track[length++] = y * width + x;
+            int nx = x + dx, ny = y + dy;
+            if (nx <= 0 || nx >= width - 1 || ny <= 0 || ny >= height - 1 || maze.isWall(nx, ny)) {
+                dx = -dx;
+                dy = -dy;
+            } else {
+                x = nx;
+                y = ny;
+            }
+        } while (x != ob.x || y != ob.y || dx != ob.dx || dy != ob.dy);
+        return Arrays.copyOf(track, length);
+    }
+
+    // Saturates instead of overflowing: a period that long is never reached by a run anyway.
+    private static long lcm(long a, long b) {
+        long g = a, h = b;
+        while (h != 0) { long r = g % h; g = h; h = r; }
+        long q = a / g;
+        return q > Long.MAX_VALUE / b ? Long.MAX_VALUE : q * b;
+    }
+
+    public int getObstacleCount() { return obstacleCount; }
+
+    // Ticks after which every obstacle is back in its initial state.
+    public long getPeriod() { return period; }
+
+    public boolean isDense() { return occupied != null; }
+
+    public int cellOf(int obstacle, int tick) {
+        int[] track = tracks[obstacle];
+        return track[tick % track.length];
+    }
+
+    public int phaseOf(int obstacle, int tick) {
+        return (phases[obstacle] + tick) % CYCLE_LENGTH;
+    }
+
+    public boolean isOccupied(int cell, int tick) {
+        if (obstacleCount == 0) return false;
+        if (occupied != null) return Maze.getBit(occupied, (int) (tick % period) * words * 64 + cell);
+        for (int k = cellStart[cell]; k < cellStart[cell + 1]; k++) {
+            if (cellOf(cellObstacles[k], tick) == cell) return true;
+        }
+        return false;
+    }
+
+    public boolean isLethal(int cell, int tick) {
+        if (obstacleCount == 0 || !Maze.getBit(everLethal, cell)) return false;
+        if (lethal != null) return Maze.getBit(lethal, (int) (tick % period) * words * 64 + cell);
+        for (int k = cellStart[cell]; k < cellStart[cell + 1]; k++) {
+            int i = cellObstacles[k];
+            if (cellOf(i, tick) == cell && phaseOf(i, tick) == LETHAL_PHASE) return true;
+        }
+        return false;
+    }
+
+    // True if some obstacle is ever red on this cell, at any tick.
+    public boolean isEverLethal(int cell) {
+        return obstacleCount > 0 && Maze.getBit(everLethal, cell);
+    }
+}
@@ -0,0 +1,146 @@
+package edu.penzgtu.remote;
+
+import edu.penzgtu.evolution.FitnessEvaluator;
+import edu.penzgtu.model.Maze;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Scores genome batches for RemoteEvaluator clients. Listens on the loopback interface; each
+// connection gets a reader thread, and batches are scored on a shared pool so a client can keep
+// several in flight. Maze sets are kept per connection, the newest MAZE_SETS_KEPT of them.
+public class EvaluationWorker {
+    private static final int MAZE_SETS_KEPT = 8;
+
+    private final ServerSocket server;
+    private final ExecutorService scorers;
+    private final AtomicInteger connections = new AtomicInteger();
+
+    public EvaluationWorker(int port, int threads) throws IOException {
+        if (threads < 1) throw new IllegalArgumentException("Thread count must be positive: " + threads);
+        this.server = new ServerSocket(port, 50, InetAddress.getLoopbackAddress());
+        AtomicInteger count = new AtomicInteger();
+        this.scorers = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "worker-scorer-" + count.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    public int getPort() { return server.getLocalPort(); }
+
+    // Accepts connections until the server socket is closed.
+    public void serve() throws IOException {
+        while (!server.isClosed()) {
+            Socket socket = server.accept();
+            Thread t = new Thread(() -> handle(socket), "worker-connection-" + connections.incrementAndGet());
+            t.setDaemon(true);
+            t.start();
+        }
+    }
+
+    private void handle(Socket socket) {
+        try (Socket s = socket) {
+            s.setTcpNoDelay(true);
+            DataInputStream in = new DataInputStream(new BufferedInputStream(s.getInputStream()));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(s.getOutputStream()));
+            out.writeInt(WorkerProtocol.MAGIC);
+            out.writeInt(WorkerProtocol.VERSION);
+            out.flush();
+            Map<Long, List<Maze>> sets = new ConcurrentHashMap<>();
+            int type;
+            while ((type = in.read()) >= 0) {
+                switch (type) {
+                    case WorkerProtocol.MAZES: {
+                        long id = in.readLong();
+                        sets.put(id, WorkerProtocol.readMazes(in));
+                        sets.keySet().removeIf(k -> k <= id - MAZE_SETS_KEPT);
+                        break;
+                    }
+                    case WorkerProtocol.BATCH: {
+                        long batchId = in.readLong();
+                        long setId = in.readLong();
+                        byte[] genomes = new byte[in.readInt()];
+                        in.readFully(genomes);
+                        List<Maze> mazes = sets.get(setId);
+                        scorers.execute(() -> score(out, batchId, setId, genomes, mazes));
+                        break;
+                    }
+                    default:
+                        throw new IOException("Unknown message type: " + type);
+                }
+            }
+        } catch (IOException e) {
+            // The client went away; its batches are re-dispatched on its side.
+        }
+    }
+
+    private static void score(DataOutputStream out, long batchId, long setId, byte[] genomes, List<Maze> mazes) {
+        try {
+            if (mazes == null) {
+                reply(out, batchId, null, "Unknown maze set " + setId);
+                return;
+            }
+            double[] fitness;
+            try {
+                fitness = FitnessEvaluator.evaluate(genomes, genomes.length, mazes);
+            } catch (RuntimeException e) {
+                reply(out, batchId, null, String.valueOf(e));
+                return;
+            }
+            reply(out, batchId, fitness, null);
+        } catch (IOException e) {
+            // Connection closed while replying.
+        }
+    }
+
+    private static void reply(DataOutputStream out, long batchId, double[] fitness, String error) throws IOException {
+        synchronized (out) {
+            if (fitness != null) {
+                out.writeByte(WorkerProtocol.RESULT);
+                out.writeLong(batchId);
+                out.writeInt(fitness.length);
+                for (double f : fitness) out.writeDouble(f);
+            } else {
+                out.writeByte(WorkerProtocol.ERROR);
+                out.writeLong(batchId);
+                out.writeUTF(error);
+            }
+            out.flush();
+        }
+    }
+
+    // Usage: EvaluationWorker [PORT] [THREADS] [--exit-with-parent]. Port 0 picks a free port; the
+    // chosen port is printed as the first line of standard output. With --exit-with-parent the worker
+    // stops when its standard input closes, so spawned workers do not outlive a crashed parent.
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 0;
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        EvaluationWorker worker = new EvaluationWorker(port, threads);
+        if (args.length > 2 && args[2].equals("--exit-with-parent")) {
+            Thread watcher = new Thread(() -> {
+                try {
+                    while (System.in.read() >= 0) {
+                        // discard
+                    }
+                } catch (IOException e) {
+                    // treat as closed
+                }
+                System.exit(0);
+            }, "parent-watcher");
+            watcher.setDaemon(true);
+            watcher.start();
+        }
+        System.out.println("listening on port " + worker.getPort());
+        System.out.flush();
+        worker.serve();
+    }
+}
@@ -0,0 +1,52 @@
+package edu.penzgtu.remote;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+// EvaluationWorker processes started on this machine with the current JVM and class path. They
+// exit when this process closes them or dies.
+public class LocalWorkers implements Closeable {
+    private static final String PORT_PREFIX = "listening on port ";
+
+    private final List<Process> processes = new ArrayList<>();
+    private final List<InetSocketAddress> addresses = new ArrayList<>();
+
+    public LocalWorkers(int count, int threadsEach) throws IOException {
+        String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+        try {
+            for (int i = 0; i < count; i++) {
+                Process p = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+                        EvaluationWorker.class.getName(), "0", String.valueOf(threadsEach), "--exit-with-parent")
+                        .redirectError(ProcessBuilder.Redirect.INHERIT)
+                        .start();
+                processes.add(p);
+                BufferedReader reader = new BufferedReader(new InputStreamReader(p.getInputStream(), StandardCharsets.UTF_8));
+                String line = reader.readLine();
+                if (line == null || !line.startsWith(PORT_PREFIX)) throw new IOException("Worker failed to start: " + line);
+                addresses.add(new InetSocketAddress(InetAddress.getLoopbackAddress(),
+                        Integer.parseInt(line.substring(PORT_PREFIX.length()).trim())));
+            }
+        } catch (IOException | RuntimeException e) {
+            close();
+            throw e;
+        }
+    }
+
+    public List<InetSocketAddress> getAddresses() { return Collections.unmodifiableList(addresses); }
+
+    public List<Process> getProcesses() { return Collections.unmodifiableList(processes); }
+
+    @Override
+    public void close() {
+        for (Process p : processes) p.destroy();
+    }
+}
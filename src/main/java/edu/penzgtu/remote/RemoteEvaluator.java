@@ -0,0 +1,301 @@
+package edu.penzgtu.remote;
+
+import edu.penzgtu.evolution.BatchScorer;
+import edu.penzgtu.evolution.FitnessEvaluator;
+import edu.penzgtu.model.Maze;
+
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+// Scores genomes on EvaluationWorker processes. A call is split into batches of at most `batchSize`
+// genomes, and each worker gets up to `maxInFlight` batches at once, least loaded worker first. A
+// maze set is sent to a worker once, before the first batch that needs it. When a worker's
+// connection fails, or it has batches in flight and stays silent for the timeout, its unanswered
+// batches go back to the queue and are sent to the remaining workers. A batch a worker answers with
+// an error is sent to a worker that has not failed it yet. Batches no live worker can take are
+// scored locally, so a call completes while the process can still score. Safe to call from several
+// threads.
+public class RemoteEvaluator implements BatchScorer, Closeable {
+    public static final long DEFAULT_TIMEOUT_MILLIS = 60_000;
+
+    private final List<Connection> workers = new ArrayList<>();
+    private final int batchSize;
+    private final int maxInFlight;
+    private final AtomicLong nextBatchId = new AtomicLong();
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder redispatched = new LongAdder();
+    private final LongAdder scoredLocally = new LongAdder();
+    private List<Maze> lastMazes;
+    private long lastSetId;
+
+    public RemoteEvaluator(List<InetSocketAddress> addresses, int batchSize, int maxInFlight) throws IOException {
+        this(addresses, batchSize, maxInFlight, DEFAULT_TIMEOUT_MILLIS);
+    }
+
+    public RemoteEvaluator(List<InetSocketAddress> addresses, int batchSize, int maxInFlight, long timeoutMillis) throws IOException {
+        if (addresses.isEmpty()) throw new IllegalArgumentException("No worker addresses");
+        if (batchSize < 1) throw new IllegalArgumentException("Batch size must be positive: " + batchSize);
+        if (maxInFlight < 1) throw new IllegalArgumentException("In-flight limit must be positive: " + maxInFlight);
+        if (timeoutMillis < 1 || timeoutMillis > Integer.MAX_VALUE) throw new IllegalArgumentException("Invalid timeout: " + timeoutMillis);
+        this.batchSize = batchSize;
+        this.maxInFlight = maxInFlight;
+        try {
+            for (InetSocketAddress address : addresses) workers.add(new Connection(address, (int) timeoutMillis));
+        } catch (IOException e) {
+            close();
+            throw e;
+        }
+    }
+
+    @Override
+    public double[] score(byte[] genomes, int count, List<Maze> mazes) {
+        Call call = new Call(setIdFor(mazes), mazes, genomes);
+        ArrayDeque<Batch> todo = new ArrayDeque<>();
+        for (int from = 0; from < count; from += batchSize) todo.add(new Batch(call, from, Math.min(batchSize, count - from)));
+        double[] fitness = new double[count];
+        int outstanding = 0;
+        while (!todo.isEmpty() || outstanding > 0) {
+            for (int n = todo.size(); n > 0; n--) {
+                Batch batch = todo.poll();
+                if (!hasCandidate(batch)) {
+                    scoreLocally(batch, fitness);
+                    continue;
+                }
+                // With nothing in flight the limit is waived, so calls from other threads cannot starve this one.
+                Connection worker = leastLoaded(outstanding == 0, batch);
+                if (worker != null && worker.send(batch)) {
+                    batches.increment();
+                    outstanding++;
+                } else {
+                    todo.add(batch);
+                }
+            }
+            if (outstanding == 0) continue;
+            Batch done = call.await();
+            outstanding--;
+            if (done.result != null) {
+                System.arraycopy(done.result, 0, fitness, done.from, done.count);
+                continue;
+            }
+            if (done.error != null) done.refused.add(done.worker);
+            done.error = null;
+            done.worker = null;
+            redispatched.increment();
+            todo.addFirst(done);
+        }
+        return fitness;
+    }
+
+    private void scoreLocally(Batch batch, double[] fitness) {
+        byte[] slice = Arrays.copyOfRange(batch.call.genomes, batch.from, batch.from + batch.count);
+        System.arraycopy(FitnessEvaluator.evaluate(slice, batch.count, batch.call.mazes), 0, fitness, batch.from, batch.count);
+        scoredLocally.increment();
+    }
+
+    // Consecutive calls on the same mazes share a set id, so workers get each maze set once.
+    private synchronized long setIdFor(List<Maze> mazes) {
+        boolean same = lastMazes != null && lastMazes.size() == mazes.size();
+        for (int i = 0; same && i < mazes.size(); i++) same = lastMazes.get(i) == mazes.get(i);
+        if (!same) {
+            lastMazes = new ArrayList<>(mazes);
+            lastSetId++;
+        }
+        return lastSetId;
+    }
+
+    // Whether a live worker is left that has not answered the batch with an error.
+    private boolean hasCandidate(Batch batch) {
+        for (Connection c : workers) if (c.alive && !batch.refused.contains(c)) return true;
+        return false;
+    }
+
+    // Live worker with the fewest batches in flight, or null if all are full, dead or refused the batch.
+    private Connection leastLoaded(boolean ignoreLimit, Batch batch) {
+        Connection best = null;
+        for (Connection c : workers) {
+            if (!c.alive || batch.refused.contains(c) || (!ignoreLimit && c.inFlight.size() >= maxInFlight)) continue;
+            if (best == null || c.inFlight.size() < best.inFlight.size()) best = c;
+        }
+        return best;
+    }
+
+    public int getWorkerCount() { return workers.size(); }
+
+    public int getLiveWorkerCount() {
+        int live = 0;
+        for (Connection c : workers) if (c.alive) live++;
+        return live;
+    }
+
+    public long getBatchCount() { return batches.sum(); }
+
+    public long getRedispatchCount() { return redispatched.sum(); }
+
+    // Batches scored in this process because no worker could take them.
+    public long getLocalBatchCount() { return scoredLocally.sum(); }
+
+    @Override
+    public void close() {
+        for (Connection c : workers) c.die();
+    }
+
+    private static final class Call {
+        final long setId;
+        final List<Maze> mazes;
+        final byte[] genomes;
+        final BlockingQueue<Batch> completed = new LinkedBlockingQueue<>();
+
+        Call(long setId, List<Maze> mazes, byte[] genomes) {
+            this.setId = setId;
+            this.mazes = mazes;
+            this.genomes = genomes;
+        }
+
+        Batch await() {
+            try {
+                return completed.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for workers", e);
+            }
+        }
+    }
+
+    // A slice of a call's genomes. Completed with a result, an error, or neither when its worker died.
+    // Fields are handed between threads through the call's queue.
+    private final class Batch {
+        final long id = nextBatchId.incrementAndGet();
+        final Call call;
+        final int from, count;
+        final List<Connection> refused = new ArrayList<>(1);
+        Connection worker;
+        double[] result;
+        String error;
+
+        Batch(Call call, int from, int count) {
+            this.call = call;
+            this.from = from;
+            this.count = count;
+        }
+    }
+
+    private static final class Connection {
+        final InetSocketAddress address;
+        final Socket socket;
+        final DataInputStream in;
+        final DataOutputStream out;
+        final Map<Long, Batch> inFlight = new ConcurrentHashMap<>();
+        final Set<Long> knownSets = ConcurrentHashMap.newKeySet();
+        final long timeoutNanos;
+        volatile boolean alive = true;
+        volatile long lastActivity = System.nanoTime();
+
+        Connection(InetSocketAddress address, int timeoutMillis) throws IOException {
+            this.address = address;
+            this.timeoutNanos = timeoutMillis * 1_000_000L;
+            socket = new Socket(address.getAddress(), address.getPort());
+            try {
+                socket.setTcpNoDelay(true);
+                socket.setSoTimeout(timeoutMillis);
+                in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+                out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+                if (in.readInt() != WorkerProtocol.MAGIC) throw new IOException("Not an evaluation worker: " + address);
+                int version = in.readInt();
+                if (version != WorkerProtocol.VERSION) throw new IOException("Unsupported worker version " + version + " at " + address);
+            } catch (IOException e) {
+                socket.close();
+                throw e;
+            }
+            Thread reader = new Thread(this::readReplies, "worker-reader-" + address.getPort());
+            reader.setDaemon(true);
+            reader.start();
+        }
+
+        // Returns false, without keeping the batch, if the worker is or just became unusable.
+        synchronized boolean send(Batch batch) {
+            if (!alive) return false;
+            Call call = batch.call;
+            batch.worker = this;
+            inFlight.put(batch.id, batch);
+            try {
+                if (knownSets.add(call.setId)) WorkerProtocol.writeMazes(out, call.setId, call.mazes);
+                out.writeByte(WorkerProtocol.BATCH);
+                out.writeLong(batch.id);
+                out.writeLong(call.setId);
+                out.writeInt(batch.count);
+                out.write(call.genomes, batch.from, batch.count);
+                out.flush();
+                lastActivity = System.nanoTime();
+                return true;
+            } catch (IOException e) {
+                inFlight.remove(batch.id);
+                die();
+                return false;
+            }
+        }
+
+        // A read timeout between replies is only fatal while batches are waiting and nothing has been
+        // sent or received for the whole timeout; one in the middle of a reply always is.
+        private void readReplies() {
+            try {
+                while (true) {
+                    int type;
+                    try {
+                        type = in.readByte();
+                    } catch (SocketTimeoutException e) {
+                        if (inFlight.isEmpty() || System.nanoTime() - lastActivity < timeoutNanos) continue;
+                        throw e;
+                    }
+                    lastActivity = System.nanoTime();
+                    long id = in.readLong();
+                    double[] result = null;
+                    String error = null;
+                    if (type == WorkerProtocol.RESULT) {
+                        result = new double[in.readInt()];
+                        for (int i = 0; i < result.length; i++) result[i] = in.readDouble();
+                    } else if (type == WorkerProtocol.ERROR) {
+                        error = in.readUTF();
+                    } else {
+                        throw new IOException("Unknown reply type: " + type);
+                    }
+                    Batch batch = inFlight.remove(id);
+                    if (batch == null) continue;
+                    batch.result = result;
+                    batch.error = error;
+                    batch.call.completed.add(batch);
+                }
+            } catch (IOException e) {
+                die();
+            }
+        }
+
+        // Hands every unanswered batch back to its caller for re-dispatch.
+        synchronized void die() {
+            if (!alive) return;
+            alive = false;
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // already unusable
+            }
+            // The reader may be completing batches concurrently; whoever removes a batch completes it.
+            for (Long id : inFlight.keySet()) {
+                Batch batch = inFlight.remove(id);
+                if (batch != null) batch.call.completed.add(batch);
+            }
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package edu.penzgtu.remote;
+
+import edu.penzgtu.model.Maze;
+import edu.penzgtu.model.MazeConfig;
+import edu.penzgtu.util.MazeCorpus;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+// Messages between RemoteEvaluator and EvaluationWorker over one TCP connection, big-endian. Each
+// message starts with a type byte. Batches are tagged with ids, so several can be in flight and
+// replies may come back in any order.
+//   on connect, worker: MAGIC, VERSION (ints)
+//   MAZES, client:  maze set id (long), maze config (MazeCorpus header fields), maze count (int),
+//                   mazes as MazeCorpus records; sent once per connection before the first batch
+//                   that uses the set
+//   BATCH, client:  batch id, maze set id (longs), genome count (int), packed genome ids (bytes)
+//   RESULT, worker: batch id (long), genome count (int), mean fitness per genome (doubles)
+//   ERROR, worker:  batch id (long), message (modified UTF-8)
+final class WorkerProtocol {
+    static final int MAGIC = 0x4d5a5731; // "MZW1"
+    static final int VERSION = 1;
+    static final int MAZES = 1, BATCH = 2, RESULT = 3, ERROR = 4;
+
+    private static final int CONFIG_SIZE = 10 * 4;
+
+    private WorkerProtocol() {}
+
+    static void writeMazes(DataOutputStream out, long setId, List<Maze> mazes) throws IOException {
+        MazeConfig config = mazes.get(0).getConfig();
+        int recordSize = MazeCorpus.recordSize(config);
+        ByteBuffer buffer = ByteBuffer.allocate(CONFIG_SIZE + 4 + mazes.size() * recordSize);
+        MazeCorpus.writeConfig(buffer, config);
+        buffer.putInt(mazes.size());
+        for (Maze maze : mazes) MazeCorpus.writeRecord(buffer, config, maze, -1);
+        out.writeByte(MAZES);
+        out.writeLong(setId);
+        out.write(buffer.array(), 0, buffer.position());
+    }
+
+    // Reads the body of a MAZES message after its set id.
+    static List<Maze> readMazes(DataInputStream in) throws IOException {
+        byte[] header = new byte[CONFIG_SIZE];
+        in.readFully(header);
+        MazeConfig config = MazeCorpus.readConfig(ByteBuffer.wrap(header));
+        int count = in.readInt();
+        int recordSize = MazeCorpus.recordSize(config);
+        if (count < 1 || (long) count * recordSize > Integer.MAX_VALUE) throw new IOException("Bad maze count: " + count);
+        byte[] records = new byte[count * recordSize];
+        in.readFully(records);
+        ByteBuffer buffer = ByteBuffer.wrap(records);
+        List<Maze> mazes = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) mazes.add(MazeCorpus.readRecord(buffer, i * recordSize, config));
+        return mazes;
+    }
+}
@@ -0,0 +1,213 @@
+package edu.penzgtu.util;
+
+import edu.penzgtu.model.Maze;
+import edu.penzgtu.model.MazeConfig;
+import edu.penzgtu.model.Obstacle;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+// Read-only view of a maze corpus file. The file is memory-mapped in segments of whole records, so
+// maze N is read straight from the page cache with absolute gets and no intermediate copies. A
+// Maze owns its wall bitset and obstacle schedule, so decoding one still builds both; decoded mazes
+// are kept in a small direct-mapped cache, so repeated passes over a range that fits in it, such
+// as a fixed scoring set, decode each maze once.
+//
+// Layout (big-endian): a HEADER_SIZE header, then fixed-size records.
+//   header: magic, version, width, height, startX, startY, goalX, goalY, minSteps, maxPathLength,
+//           numObstacles, maxSteps (ints), record count (long), record size (int)
+//   record: wall bitset (one long per 64 cells, index y * width + x), obstacle count, shortest path
+//           length with turns (ints), then numObstacles slots of cell (int), dx, dy, phase (bytes)
+//           and one padding byte
+// Instances are safe to share between threads.
+public class MazeCorpus implements Closeable {
+    public static final int MAGIC = 0x4d5a4331; // "MZC1"
+    public static final int VERSION = 1;
+    public static final int HEADER_SIZE = 64;
+    public static final int DEFAULT_CACHED_MAZES = 1024;
+    static final int OBSTACLE_SLOT_SIZE = 8;
+
+    private static final long MAX_SEGMENT_BYTES = Integer.MAX_VALUE;
+
+    private final FileChannel channel;
+    private final MazeConfig config;
+    private final long count;
+    private final int recordSize;
+    private final int words;
+    private final long recordsPerSegment;
+    private final MappedByteBuffer[] segments;
+    private final AtomicReferenceArray<Cached> cache;
+
+    private MazeCorpus(FileChannel channel, int cachedMazes) throws IOException {
+        if (cachedMazes < 0) throw new IllegalArgumentException("Cache size must not be negative: " + cachedMazes);
+        this.channel = channel;
+        this.cache = cachedMazes == 0 ? null : new AtomicReferenceArray<>(cachedMazes);
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        while (header.hasRemaining()) {
+            if (channel.read(header, header.position()) < 0) throw new IOException("Truncated corpus header");
+        }
+        header.flip();
+        if (header.getInt() != MAGIC) throw new IOException("Not a maze corpus file");
+        int version = header.getInt();
+        if (version != VERSION) throw new IOException("Unsupported corpus version: " + version);
+        config = readConfig(header);
+        count = header.getLong();
+        recordSize = header.getInt();
+        words = Maze.newBitset(config.getWidth(), config.getHeight()).length;
+        if (recordSize != recordSize(config)) throw new IOException("Record size " + recordSize + " does not match " + config);
+        if (channel.size() < HEADER_SIZE + count * recordSize) throw new IOException("Truncated corpus: expected " + count + " records");
+
+        recordsPerSegment = MAX_SEGMENT_BYTES / recordSize;
+        int segmentCount = (int) ((count + recordsPerSegment - 1) / recordsPerSegment);
+        segments = new MappedByteBuffer[segmentCount];
+        for (int s = 0; s < segmentCount; s++) {
+            long first = s * recordsPerSegment;
+            long records = Math.min(recordsPerSegment, count - first);
+            segments[s] = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE + first * recordSize, records * recordSize);
+        }
+    }
+
+    public static MazeCorpus open(Path path) throws IOException {
+        return open(path, DEFAULT_CACHED_MAZES);
+    }
+
+    // Keeps up to `cachedMazes` decoded mazes, maze N in slot N % cachedMazes; 0 disables the cache.
+    public static MazeCorpus open(Path path, int cachedMazes) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            return new MazeCorpus(channel, cachedMazes);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    // Record codec, shared with run checkpoints. A record only fits mazes with the layout and at most
+    // the obstacle count of the config it was sized for.
+    public static int recordSize(MazeConfig config) {
+        int size = Maze.newBitset(config.getWidth(), config.getHeight()).length * 8 + 8
+                + config.getNumObstacles() * OBSTACLE_SLOT_SIZE;
+        return (size + 7) & ~7;
+    }
+
+    public static void writeConfig(ByteBuffer out, MazeConfig config) {
+        out.putInt(config.getWidth()).putInt(config.getHeight())
+                .putInt(config.getStartX()).putInt(config.getStartY())
+                .putInt(config.getGoalX()).putInt(config.getGoalY())
+                .putInt(config.getMinSteps()).putInt(config.getMaxPathLength())
+                .putInt(config.getNumObstacles()).putInt(config.getMaxSteps());
+    }
+
+    public static MazeConfig readConfig(ByteBuffer in) {
+        int width = in.getInt(), height = in.getInt();
+        int startX = in.getInt(), startY = in.getInt();
+        int goalX = in.getInt(), goalY = in.getInt();
+        int minSteps = in.getInt(), maxPathLength = in.getInt();
+        int numObstacles = in.getInt(), maxSteps = in.getInt();
+        return new MazeConfig(width, height, startX, startY, goalX, goalY, minSteps, maxPathLength, numObstacles, maxSteps);
+    }
+
+    // Writes one recordSize(config) record at the buffer's position.
+    public static void writeRecord(ByteBuffer out, MazeConfig config, Maze maze, int pathLength) {
+        if (!sameLayout(maze.getConfig(), config)) {
+            throw new IllegalArgumentException("Maze config " + maze.getConfig() + " does not match " + config);
+        }
+        List<Obstacle> obstacles = maze.getObstacles();
+        if (obstacles.size() > config.getNumObstacles()) {
+            throw new IllegalArgumentException("Maze has " + obstacles.size() + " obstacles, record allows " + config.getNumObstacles());
+        }
+        int base = out.position();
+        long[] walls = Maze.newBitset(maze.getWidth(), maze.getHeight());
+        for (int y = 0; y < maze.getHeight(); y++) {
+            for (int x = 0; x < maze.getWidth(); x++) {
+                if (maze.isWall(x, y)) Maze.setBit(walls, maze.index(x, y), true);
+            }
+        }
+        for (long word : walls) out.putLong(word);
+        out.putInt(obstacles.size());
+        out.putInt(pathLength);
+        for (Obstacle ob : obstacles) {
+            out.putInt(maze.index(ob.x, ob.y));
+            out.put((byte) ob.dx).put((byte) ob.dy).put((byte) ob.cycleOffset).put((byte) 0);
+        }
+        while (out.position() < base + recordSize(config)) out.put((byte) 0);
+    }
+
+    // Reads the record at absolute offset `base` without moving the buffer's position.
+    public static Maze readRecord(ByteBuffer in, int base, MazeConfig config) {
+        int words = Maze.newBitset(config.getWidth(), config.getHeight()).length;
+        long[] walls = new long[words];
+        for (int w = 0; w < words; w++) walls[w] = in.getLong(base + w * 8);
+        Maze maze = new Maze(config, walls);
+        int obstacles = in.getInt(base + words * 8);
+        int pathLength = in.getInt(base + words * 8 + 4);
+        if (obstacles == 0) return maze.withPathLength(pathLength);
+        int width = config.getWidth();
+        List<Obstacle> list = new ArrayList<>(obstacles);
+        for (int i = 0; i < obstacles; i++) {
+            int slot = base + words * 8 + 8 + i * OBSTACLE_SLOT_SIZE;
+            int cell = in.getInt(slot);
+            list.add(new Obstacle(cell % width, cell / width, in.get(slot + 4), in.get(slot + 5), in.get(slot + 6)));
+        }
+        return maze.withObstacles(list).withPathLength(pathLength);
+    }
+
+    static boolean sameLayout(MazeConfig a, MazeConfig b) {
+        return a.getWidth() == b.getWidth() && a.getHeight() == b.getHeight()
+                && a.getStartX() == b.getStartX() && a.getStartY() == b.getStartY()
+                && a.getGoalX() == b.getGoalX() && a.getGoalY() == b.getGoalY();
+    }
+
+    public MazeConfig getConfig() { return config; }
+
+    public long size() { return count; }
+
+    // Mazes are immutable, so a cached maze is shared by every caller that asks for it.
+    public Maze get(long index) {
+        ByteBuffer segment = segment(index);
+        if (cache == null) return readRecord(segment, offset(index), config);
+        int slot = (int) (index % cache.length());
+        Cached cached = cache.get(slot);
+        if (cached != null && cached.index == index) return cached.maze;
+        Maze maze = readRecord(segment, offset(index), config);
+        cache.set(slot, new Cached(index, maze));
+        return maze;
+    }
+
+    // Shortest path length with turns, as checked by the generator when the maze was written.
+    public int getPathLength(long index) {
+        return segment(index).getInt(offset(index) + words * 8 + 4);
+    }
+
+    private ByteBuffer segment(long index) {
+        if (index < 0 || index >= count) throw new IndexOutOfBoundsException("Maze " + index + " of " + count);
+        return segments[(int) (index / recordsPerSegment)];
+    }
+
+    private int offset(long index) {
+        return (int) (index % recordsPerSegment) * recordSize;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private static final class Cached {
+        final long index;
+        final Maze maze;
+
+        Cached(long index, Maze maze) {
+            this.index = index;
+            this.maze = maze;
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package edu.penzgtu.util;
+
+import edu.penzgtu.model.Maze;
+import edu.penzgtu.model.MazeConfig;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Locale;
+
+// Streams mazes into the MazeCorpus format. Records are buffered and written sequentially; the
+// record count in the header is filled in on close().
+public class MazeCorpusWriter implements Closeable {
+    private static final int BUFFER_RECORDS = 1024;
+
+    private final FileChannel channel;
+    private final MazeConfig config;
+    private final int recordSize;
+    private final ByteBuffer buffer;
+    private long count;
+
+    public MazeCorpusWriter(Path path, MazeConfig config) throws IOException {
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        this.config = config;
+        this.recordSize = MazeCorpus.recordSize(config);
+        this.buffer = ByteBuffer.allocate(Math.max(MazeCorpus.HEADER_SIZE, recordSize * BUFFER_RECORDS));
+        writeHeader();
+        channel.position(MazeCorpus.HEADER_SIZE);
+    }
+
+    // Writes `count` mazes from the generator, built ahead on `threads` producers. Maze N comes from
+    // stream N of the "corpus" stream, so the file depends only on the seed and generator settings.
+    public static void generate(Path path, MazeGenerator generator, RandomSource random, long count, int threads) throws IOException {
+        MazePrefetcher prefetcher = new MazePrefetcher(generator, random, "corpus", 4 * threads, threads);
+        try (MazeCorpusWriter writer = new MazeCorpusWriter(path, generator.getConfig())) {
+            for (long i = 0; i < count; i++) writer.append(prefetcher.take());
+        } finally {
+            prefetcher.shutdown();
+        }
+    }
+
+    // Generated mazes carry the path length their generator accepted; others are searched here.
+    public void append(Maze maze) throws IOException {
+        int pathLength = maze.getPathLength();
+        if (pathLength < 0) {
+            int[] path = Pathfinding.aStarPathfinding(maze);
+            pathLength = path == null ? -1 : Pathfinding.getPathLengthWithTurns(path, maze.getWidth());
+        }
+        if (buffer.remaining() < recordSize) flush();
+        MazeCorpus.writeRecord(buffer, config, maze, pathLength);
+        count++;
+    }
+
+    public long getCount() { return count; }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+            writeHeader();
+            channel.force(false);
+        } finally {
+            channel.close();
+        }
+    }
+
+    private void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) channel.write(buffer);
+        buffer.clear();
+    }
+
+    private void writeHeader() throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(MazeCorpus.HEADER_SIZE);
+        header.putInt(MazeCorpus.MAGIC).putInt(MazeCorpus.VERSION);
+        MazeCorpus.writeConfig(header, config);
+        header.putLong(count).putInt(recordSize);
+        header.clear();
+        while (header.hasRemaining()) channel.write(header, header.position());
+    }
+
+    // Usage: MazeCorpusWriter FILE COUNT [SEED] [THREADS]
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: MazeCorpusWriter FILE COUNT [SEED] [THREADS]");
+            System.exit(2);
+        }
+        long count = Long.parseLong(args[1]);
+        long seed = args.length > 2 ? Long.parseLong(args[2]) : System.nanoTime();
+        int threads = args.length > 3 ? Integer.parseInt(args[3]) : Runtime.getRuntime().availableProcessors();
+        long start = System.nanoTime();
+        generate(Paths.get(args[0]), new MazeGenerator(MazeConfig.DEFAULT, MazeGenerator.Mode.REPAIR),
+                new RandomSource(seed), count, threads);
+        System.err.printf(Locale.ROOT, "%d mazes written in %.1f s (seed %d)%n", count, (System.nanoTime() - start) / 1e9, seed);
+    }
+}
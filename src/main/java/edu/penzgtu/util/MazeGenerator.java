@@ -1,106 +1,302 @@
 package edu.penzgtu.util;
 
+import edu.penzgtu.metrics.MazeGenerationEvent;
+import edu.penzgtu.metrics.Metrics;
+import edu.penzgtu.model.Maze;
+import edu.penzgtu.model.MazeConfig;
 import edu.penzgtu.model.Obstacle;
+import edu.penzgtu.model.ObstacleSchedule;
 
-import java.awt.*;
 import java.util.*;
-import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
 
 public class MazeGenerator {
-    private static final int SIZE = 32;
-    private static final int MIN_STEPS = 70;
-    private static final int MAX_PATH_LENGTH = 150;
     private static final int MAX_ATTEMPTS = 1000;
-    private static final int NUM_OBSTACLES = 8;
-    private static final int CYCLE_LENGTH = 4; // yellow x2, orange, red
+    private static final int MAX_REPAIRS = 8;
+    private static final int MAX_OBSTACLE_PLACEMENTS = 8;
+    private static final int[] DX = {0, 1, 0, -1};
+    private static final int[] DY = {-1, 0, 1, 0};
+    private static final int[] CARVE_DX = {0, 2, 0, -2};
+    private static final int[] CARVE_DY = {2, 0, -2, 0};
+    private static final int[][] OBSTACLE_DIRS = {{1,0},{-1,0},{0,1},{0,-1}};
 
-    private final List<Obstacle> obstacles = new ArrayList<>();
+    // REJECTION discards every maze whose path misses the length window. REPAIR edits a near miss
+    // instead: shortcuts through a wall when the path is too long, reroutes it when too short, and
+    // re-places obstacles on the same layout when they break the path.
+    public enum Mode { REJECTION, REPAIR }
 
-    public char[][] generateValidMaze() {
-        Random rand = new Random();
+    private final MazeConfig config;
+    private final Mode mode;
+    private final LongAdder attempts = new LongAdder();
+    private final LongAdder validMazes = new LongAdder();
+    private final LongAdder repairs = new LongAdder();
+    private final LongAdder obstaclePlacements = new LongAdder();
+
+    public MazeGenerator() {
+        this(MazeConfig.DEFAULT);
+    }
+
+    public MazeGenerator(MazeConfig config) {
+        this(config, Mode.REJECTION);
+    }
+
+    public MazeGenerator(MazeConfig config, Mode mode) {
+        this.config = config;
+        this.mode = mode;
+    }
+
+    public MazeConfig getConfig() { return config; }
+
+    public Mode getMode() { return mode; }
+
+    // Carved layouts, including those that were repaired into valid mazes.
+    public long getAttemptCount() { return attempts.sum(); }
+
+    public long getValidMazeCount() { return validMazes.sum(); }
+
+    // Walls opened or closed by REPAIR mode.
+    public long getRepairCount() { return repairs.sum(); }
+
+    public long getObstaclePlacementCount() { return obstaclePlacements.sum(); }
+
+    // Carved layouts per valid maze. REPAIR keeps this near 1 by moving the work into repairs and
+    // obstacle re-placements, so compare modes by getPathChecksPerValidMaze() instead.
+    public double getAttemptsPerValidMaze() {
+        long valid = validMazes.sum();
+        return valid == 0 ? 0 : (double) attempts.sum() / valid;
+    }
+
+    // Path searches per valid maze: one per carved layout, per repair and per obstacle placement.
+    public double getPathChecksPerValidMaze() {
+        long valid = validMazes.sum();
+        return valid == 0 ? 0 : (double) (attempts.sum() + repairs.sum() + obstaclePlacements.sum()) / valid;
+    }
+
+    public Maze generateValidMaze() {
+        return generateValidMaze(new SplittableRandom());
+    }
+
+    public Maze generateValidMaze(SplittableRandom rand) {
+        MazeGenerationEvent event = new MazeGenerationEvent();
+        event.begin();
+        long start = System.nanoTime();
+        int total = 0, repaired = 0, placed = 0;
         int attempt = 0;
         while (true) {
             attempt++;
-            char[][] maze = generateMaze(rand);
-            List<Point> path = Pathfinding.aStarPathfinding(maze);
-            if (!isValidMaze(path)) continue;
-
-            char[][] mazeWithObs = addDynamicObstacles(maze, rand);
-            path = Pathfinding.aStarPathfinding(mazeWithObs);
-            if (isValidMaze(path)) return mazeWithObs;
+            total++;
+            attempts.increment();
+            long[] walls = carveWalls(rand);
+            Maze maze = new Maze(config, walls);
+            int[] path = Pathfinding.aStarPathfinding(maze);
+            if (mode == Mode.REPAIR) {
+                for (int r = 0; r < MAX_REPAIRS && path != null && !isValidMaze(path, maze); r++) {
+                    walls = walls.clone();
+                    if (!repair(walls, path, rand)) break;
+                    repairs.increment();
+                    repaired++;
+                    maze = new Maze(config, walls);
+                    path = Pathfinding.aStarPathfinding(maze);
+                }
+            }
+            if (isValidMaze(path, maze)) {
+                int placements = mode == Mode.REPAIR ? MAX_OBSTACLE_PLACEMENTS : 1;
+                for (int p = 0; p < placements; p++) {
+                    obstaclePlacements.increment();
+                    placed++;
+                    Maze mazeWithObs = addDynamicObstacles(maze, rand);
+                    path = Pathfinding.aStarPathfinding(mazeWithObs);
+                    if (isValidMaze(path, mazeWithObs)) {
+                        validMazes.increment();
+                        Metrics.recordMazeGeneration(total, repaired, placed, System.nanoTime() - start);
+                        if (event.shouldCommit()) {
+                            event.attempts = total;
+                            event.repairs = repaired;
+                            event.obstaclePlacements = placed;
+                            event.commit();
+                        }
+                        return mazeWithObs.withPathLength(Pathfinding.getPathLengthWithTurns(path, mazeWithObs.getWidth()));
+                    }
+                }
+            }
 
-            if (attempt >= MAX_ATTEMPTS) { rand = new Random(); attempt = 0; }
+            if (attempt >= MAX_ATTEMPTS) { rand = rand.split(); attempt = 0; }
         }
     }
 
-    private char[][] generateMaze(Random rand) {
-        char[][] maze = new char[SIZE][SIZE];
-        for (int i = 0; i < SIZE; i++) for (int j = 0; j < SIZE; j++) maze[i][j] = '#';
-        Stack<Point> stack = new Stack<>();
-        maze[1][1] = '.'; stack.push(new Point(1, 1));
-        int[][] dirs = {{0,2},{2,0},{0,-2},{-2,0}};
-        while (!stack.isEmpty()) {
-            Point cur = stack.peek();
-            List<int[]> shuffled = new ArrayList<>(Arrays.asList(dirs));
-            Collections.shuffle(shuffled, rand);
+    private long[] carveWalls(SplittableRandom rand) {
+        int width = config.getWidth(), height = config.getHeight();
+        long[] walls = Maze.newBitset(width, height);
+        Arrays.fill(walls, -1L);
+        int[] stack = new int[(width / 2 + 1) * (height / 2 + 1)];
+        int[] order = {0, 1, 2, 3};
+        int top = 0;
+        carve(walls, 1, 1);
+        stack[top++] = width + 1;
+        while (top > 0) {
+            int cur = stack[top - 1];
+            int cx = cur % width, cy = cur / width;
+            shuffle(order, rand);
             boolean moved = false;
-            for (int[] d : shuffled) {
-                int nx = cur.x + d[0], ny = cur.y + d[1];
-                if (nx > 0 && nx < SIZE-1 && ny > 0 && ny < SIZE-1 && maze[ny][nx] == '#') {
-                    maze[ny][nx] = '.';
-                    maze[cur.y + d[1]/2][cur.x + d[0]/2] = '.';
-                    stack.push(new Point(nx, ny));
+            for (int d : order) {
+                int nx = cx + CARVE_DX[d], ny = cy + CARVE_DY[d];
+                if (nx > 0 && nx < width-1 && ny > 0 && ny < height-1 && isWall(walls, nx, ny)) {
+                    carve(walls, nx, ny);
+                    carve(walls, cx + CARVE_DX[d]/2, cy + CARVE_DY[d]/2);
+                    stack[top++] = ny * width + nx;
                     moved = true; break;
                 }
             }
-            if (!moved) stack.pop();
+            if (!moved) top--;
         }
-        maze[1][1] = '.';
-        maze[30][1] = 'G';
-        return maze;
+        connect(walls, config.getStartX(), config.getStartY());
+        connect(walls, config.getGoalX(), config.getGoalY());
+        return walls;
     }
 
-    private char[][] addDynamicObstacles(char[][] base, Random rand) {
-        char[][] maze = new char[SIZE][SIZE];
-        for (int i = 0; i < SIZE; i++) maze[i] = base[i].clone();
-        obstacles.clear();
+    // One edit that moves the path length towards the middle of the window. Lengths are compared in
+    // cell steps, scaled by the current path's ratio of steps-with-turns to cell steps.
+    private boolean repair(long[] walls, int[] path, SplittableRandom rand) {
+        int length = Pathfinding.getPathLengthWithTurns(path, config.getWidth());
+        double perStep = (double) length / (path.length - 1);
+        int target = (int) Math.round((config.getMinSteps() + config.getMaxPathLength()) / 2.0 / perStep);
+        return length > config.getMaxPathLength()
+                ? shortcut(walls, path, target, rand)
+                : reroute(walls, path, target, rand);
+    }
+
+    // Opens the wall between two path cells that are far apart along the path. Saves (gap - 2) steps.
+    private boolean shortcut(long[] walls, int[] path, int target, SplittableRandom rand) {
+        int width = config.getWidth(), height = config.getHeight();
+        int[] position = new int[width * height];
+        Arrays.fill(position, -1);
+        for (int i = 0; i < path.length; i++) position[path[i]] = i;
+        int excess = path.length - 1 - target;
+        int best = -1, bestError = Integer.MAX_VALUE, ties = 0;
+        for (int y = 1; y < height - 1; y++) {
+            for (int x = 1; x < width - 1; x++) {
+                if (!isWall(walls, x, y)) continue;
+                for (int d = 0; d < 2; d++) {
+                    int a = position[(y + DY[d]) * width + x + DX[d]];
+                    int b = position[(y - DY[d]) * width + x - DX[d]];
+                    if (a < 0 || b < 0 || Math.abs(a - b) < 3) continue;
+                    int error = Math.abs(Math.abs(a - b) - 2 - excess);
+                    if (error < bestError) { bestError = error; best = y * width + x; ties = 1; }
+                    else if (error == bestError && rand.nextInt(++ties) == 0) best = y * width + x;
+                }
+            }
+        }
+        if (best < 0) return false;
+        Maze.setBit(walls, best, false);
+        return true;
+    }
+
+    // Walls off one path cell, then reconnects the start side to the goal side through the wall whose
+    // opening gives the path closest to the target length, measured by BFS distances from both ends.
+    private boolean reroute(long[] walls, int[] path, int target, SplittableRandom rand) {
+        if (path.length < 3) return false;
+        int width = config.getWidth(), height = config.getHeight();
+        int cut = path[1 + rand.nextInt(path.length - 2)];
+        Maze.setBit(walls, cut, true);
+        int[] fromStart = distances(walls, path[0]);
+        if (fromStart[path[path.length - 1]] >= 0) return true;
+        int[] fromGoal = distances(walls, path[path.length - 1]);
+        int best = -1, bestError = Integer.MAX_VALUE, ties = 0;
+        for (int y = 1; y < height - 1; y++) {
+            for (int x = 1; x < width - 1; x++) {
+                int cell = y * width + x;
+                if (cell == cut || !isWall(walls, x, y)) continue;
+                for (int d = 0; d < 4; d++) {
+                    int a = (y + DY[d]) * width + x + DX[d];
+                    int b = (y - DY[d]) * width + x - DX[d];
+                    if (fromStart[a] < 0 || fromGoal[b] < 0) continue;
+                    int error = Math.abs(fromStart[a] + 2 + fromGoal[b] - target);
+                    if (error < bestError) { bestError = error; best = cell; ties = 1; }
+                    else if (error == bestError && rand.nextInt(++ties) == 0) best = cell;
+                }
+            }
+        }
+        if (best < 0) {
+            Maze.setBit(walls, cut, false);
+            return false;
+        }
+        Maze.setBit(walls, best, false);
+        return true;
+    }
+
+    // BFS step counts from one cell over open cells; -1 where unreachable.
+    private int[] distances(long[] walls, int source) {
+        int width = config.getWidth(), height = config.getHeight();
+        int[] dist = new int[width * height];
+        Arrays.fill(dist, -1);
+        int[] queue = new int[width * height];
+        int head = 0, tail = 0;
+        dist[source] = 0;
+        queue[tail++] = source;
+        while (head < tail) {
+            int cell = queue[head++];
+            int x = cell % width, y = cell / width;
+            for (int d = 0; d < 4; d++) {
+                int nx = x + DX[d], ny = y + DY[d];
+                if (nx < 0 || nx >= width || ny < 0 || ny >= height || isWall(walls, nx, ny)) continue;
+                int next = ny * width + nx;
+                if (dist[next] >= 0) continue;
+                dist[next] = dist[cell] + 1;
+                queue[tail++] = next;
+            }
+        }
+        return dist;
+    }
+
+    // Carving only opens odd coordinates, so an even start or goal is joined to the nearest carved cell.
+    private void connect(long[] walls, int x, int y) {
+        carve(walls, x, y);
+        int ox = x % 2 == 1 ? x : (x + 1 < config.getWidth() - 1 ? x + 1 : x - 1);
+        int oy = y % 2 == 1 ? y : (y + 1 < config.getHeight() - 1 ? y + 1 : y - 1);
+        carve(walls, ox, y);
+        carve(walls, ox, oy);
+    }
+
+    private static void shuffle(int[] order, SplittableRandom rand) {
+        for (int i = order.length - 1; i > 0; i--) {
+            int j = rand.nextInt(i + 1);
+            int tmp = order[i]; order[i] = order[j]; order[j] = tmp;
+        }
+    }
+
+    private Maze addDynamicObstacles(Maze maze, SplittableRandom rand) {
+        int width = maze.getWidth(), height = maze.getHeight();
+        List<Obstacle> obstacles = new ArrayList<>();
+        Set<Integer> taken = new HashSet<>();
         int placed = 0, attempts = 0;
-        while (placed < NUM_OBSTACLES && attempts < MAX_ATTEMPTS) {
+        while (placed < config.getNumObstacles() && attempts < MAX_ATTEMPTS) {
             attempts++;
-            int x = rand.nextInt(SIZE), y = rand.nextInt(SIZE);
-            if (maze[y][x] != '.' || (x==1&&y==1) || maze[y][x]=='G') continue;
+            int x = rand.nextInt(width), y = rand.nextInt(height);
+            if (maze.isWall(x, y) || taken.contains(maze.index(x, y)) || maze.isStart(x, y) || maze.isGoal(x, y)) continue;
             if (isIntersection(maze, x, y)) continue;
-            int[] dir = pickRandomDirection(rand);
-            int offset = rand.nextInt(CYCLE_LENGTH);
+            int[] dir = OBSTACLE_DIRS[rand.nextInt(OBSTACLE_DIRS.length)];
+            int offset = rand.nextInt(ObstacleSchedule.CYCLE_LENGTH);
             obstacles.add(new Obstacle(x, y, dir[0], dir[1], offset));
-            maze[y][x] = 'O';
+            taken.add(maze.index(x, y));
             placed++;
         }
-        return maze;
+        return maze.withObstacles(obstacles);
     }
 
-    private int[] pickRandomDirection(Random rand) {
-        int[][] dirs = {{1,0},{-1,0},{0,1},{0,-1}};
-        return dirs[rand.nextInt(dirs.length)];
+    private boolean isIntersection(Maze maze, int x, int y) {
+        boolean up = !maze.isWall(x, y-1), down = !maze.isWall(x, y+1);
+        boolean left = !maze.isWall(x-1, y), right = !maze.isWall(x+1, y);
+        int cnt = (up?1:0) + (down?1:0) + (left?1:0) + (right?1:0);
+        return cnt!=2 || (up&&left) || (up&&right) || (down&&left) || (down&&right);
     }
 
-    private boolean isIntersection(char[][] maze, int x, int y) {
-        int cnt=0;
-        if (y>0 && maze[y-1][x]=='.') cnt++;
-        if (y<SIZE-1 && maze[y+1][x]=='.') cnt++;
-        if (x>0 && maze[y][x-1]=='.') cnt++;
-        if (x<SIZE-1 && maze[y][x+1]=='.') cnt++;
-        return cnt!=2 || ((maze[y-1][x]=='.'&&maze[y][x-1]=='.')||
-                (maze[y-1][x]=='.'&&maze[y][x+1]=='.')||
-                (maze[y+1][x]=='.'&&maze[y][x-1]=='.')||
-                (maze[y+1][x]=='.'&&maze[y][x+1]=='.'));
+    private boolean isValidMaze(int[] path, Maze maze) {
+        if (path==null||path.length<2) return false;
+        int steps = Pathfinding.getPathLengthWithTurns(path, maze.getWidth());
+        return steps>=config.getMinSteps() && steps<=config.getMaxPathLength();
     }
 
-    private boolean isValidMaze(List<Point> path) {
-        if (path==null||path.size()<2) return false;
-        int steps = Pathfinding.getPathLengthWithTurns(path);
-        return steps>=MIN_STEPS && steps<=MAX_PATH_LENGTH;
-    }
+    private boolean isWall(long[] walls, int x, int y) { return Maze.getBit(walls, y * config.getWidth() + x); }
 
-    public List<Obstacle> getObstacles() { return new ArrayList<>(obstacles); }
+    private void carve(long[] walls, int x, int y) { Maze.setBit(walls, y * config.getWidth() + x, false); }
 }
@@ -0,0 +1,195 @@
+package edu.penzgtu.util;
+
+import edu.penzgtu.model.Maze;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+// The mazes of one generation. Maze N of the sequence is the same however and whenever it is drawn,
+// so the pool after G generations depends only on the seed, the settings and G; fork() relies on
+// that to give concurrent consumers their own pools over one shared sequence.
+public class MazePool {
+    private final MazeGenerator generator;
+    private final Sequence sequence;
+    private final List<Maze> mazes;
+    private final int rotation;
+    private int oldest;
+    private long generated;
+    private long version;
+
+    public MazePool(MazeGenerator generator, int size, int rotation, long seed) {
+        this(generator, new RandomSource(seed), null, size, rotation);
+    }
+
+    // Takes its mazes from a prefetcher instead of generating them on the calling thread. A prefetcher
+    // over the "maze-pool" stream of RandomSource(seed) yields the same mazes as the seeded constructor.
+    public MazePool(MazePrefetcher prefetcher, int size, int rotation) {
+        this(prefetcher.getGenerator(), null, prefetcher, size, rotation);
+    }
+
+    private MazePool(MazeGenerator generator, RandomSource random, MazePrefetcher prefetcher, int size, int rotation) {
+        this(generator, random, prefetcher, size, rotation, null);
+        for (int i = 0; i < size; i++) mazes.add(nextMaze());
+    }
+
+    private MazePool(MazeGenerator generator, RandomSource random, MazePrefetcher prefetcher, int size, int rotation, State state) {
+        if (size <= 0) throw new IllegalArgumentException("Pool size must be positive: " + size);
+        if (rotation < 0 || rotation > size) throw new IllegalArgumentException("Rotation must be in [0, " + size + "]: " + rotation);
+        this.generator = generator;
+        this.rotation = rotation;
+        this.mazes = new ArrayList<>(size);
+        if (state != null) {
+            mazes.addAll(state.mazes);
+            oldest = state.oldest;
+            generated = state.generated;
+            version = state.version;
+        }
+        this.sequence = new Sequence(generator, random, prefetcher, generated);
+    }
+
+    private MazePool(MazePool parent) {
+        this.generator = parent.generator;
+        this.rotation = parent.rotation;
+        this.mazes = new ArrayList<>(parent.mazes);
+        this.oldest = parent.oldest;
+        this.generated = parent.generated;
+        this.version = parent.version;
+        this.sequence = parent.sequence;
+        sequence.join(generated);
+    }
+
+    // Continues a pool from a saved state. The seeded pool picks up at maze state.generated; a
+    // prefetcher must have been created to start at that index.
+    public static MazePool restore(MazeGenerator generator, long seed, State state) {
+        return new MazePool(generator, new RandomSource(seed), null, state.mazes.size(), state.rotation, state);
+    }
+
+    public static MazePool restore(MazePrefetcher prefetcher, State state) {
+        return new MazePool(prefetcher.getGenerator(), null, prefetcher, state.mazes.size(), state.rotation, state);
+    }
+
+    // A pool in the same state that advances on its own: both draw from one sequence, and each maze
+    // is kept until every pool sharing it has taken it. A fork that is no longer advanced must be
+    // closed, or the mazes it has not reached yet are kept for it.
+    public MazePool fork() {
+        return new MazePool(this);
+    }
+
+    public void close() {
+        sequence.leave(generated);
+    }
+
+    // Everything nextGeneration() depends on. Mazes are immutable, so the list is a cheap copy.
+    public State getState() {
+        return new State(mazes, rotation, oldest, generated, version);
+    }
+
+    public List<Maze> getMazes() { return Collections.unmodifiableList(mazes); }
+
+    public int size() { return mazes.size(); }
+
+    // Changes whenever the set of mazes changes, so cached fitness values can be scoped to it.
+    public long getVersion() { return version; }
+
+    // Replaces the oldest `rotation` mazes so later generations see fresh layouts.
+    public void nextGeneration() {
+        for (int i = 0; i < rotation; i++) {
+            mazes.set(oldest, nextMaze());
+            oldest = (oldest + 1) % mazes.size();
+        }
+        if (rotation > 0) version++;
+    }
+
+    private Maze nextMaze() {
+        return sequence.get(generated++);
+    }
+
+    // Draws mazes in index order from the generator or the prefetcher. While a single pool reads the
+    // sequence, mazes are handed straight over; with forks, each drawn maze is kept with the number of
+    // pools yet to take it.
+    private static final class Sequence {
+        private final MazeGenerator generator;
+        private final RandomSource random;
+        private final MazePrefetcher prefetcher;
+        private final Map<Long, Kept> kept = new HashMap<>();
+        private long next;
+        private int readers = 1;
+
+        Sequence(MazeGenerator generator, RandomSource random, MazePrefetcher prefetcher, long next) {
+            this.generator = generator;
+            this.random = random;
+            this.prefetcher = prefetcher;
+            this.next = next;
+        }
+
+        synchronized Maze get(long index) {
+            if (index == next && readers == 1) return draw(next++);
+            while (next <= index) {
+                kept.put(next, new Kept(draw(next), readers));
+                next++;
+            }
+            Kept k = kept.get(index);
+            if (--k.readers == 0) kept.remove(index);
+            return k.maze;
+        }
+
+        // A reader that will take every maze from index `from` on joins or leaves.
+        synchronized void join(long from) {
+            readers++;
+            for (Map.Entry<Long, Kept> e : kept.entrySet()) if (e.getKey() >= from) e.getValue().readers++;
+        }
+
+        synchronized void leave(long from) {
+            readers--;
+            for (Iterator<Map.Entry<Long, Kept>> it = kept.entrySet().iterator(); it.hasNext(); ) {
+                Map.Entry<Long, Kept> e = it.next();
+                if (e.getKey() >= from && --e.getValue().readers == 0) it.remove();
+            }
+        }
+
+        // Each maze gets its own stream, so maze N is the same no matter which thread builds it.
+        private Maze draw(long index) {
+            if (prefetcher != null) return prefetcher.take();
+            return generator.generateValidMaze(random.stream("maze-pool", index));
+        }
+    }
+
+    private static final class Kept {
+        final Maze maze;
+        int readers;
+
+        Kept(Maze maze, int readers) {
+            this.maze = maze;
+            this.readers = readers;
+        }
+    }
+
+    public static final class State {
+        private final List<Maze> mazes;
+        private final int rotation;
+        private final int oldest;
+        private final long generated;
+        private final long version;
+
+        public State(List<Maze> mazes, int rotation, int oldest, long generated, long version) {
+            if (mazes.isEmpty()) throw new IllegalArgumentException("Pool state has no mazes");
+            if (oldest < 0 || oldest >= mazes.size()) throw new IllegalArgumentException("Oldest maze index out of range: " + oldest);
+            this.mazes = Collections.unmodifiableList(new ArrayList<>(mazes));
+            this.rotation = rotation;
+            this.oldest = oldest;
+            this.generated = generated;
+            this.version = version;
+        }
+
+        public List<Maze> getMazes() { return mazes; }
+        public int getRotation() { return rotation; }
+        public int getOldest() { return oldest; }
+        // Mazes drawn from the generator or prefetcher so far, i.e. the index of the next one.
+        public long getGenerated() { return generated; }
+        public long getVersion() { return version; }
+    }
+}
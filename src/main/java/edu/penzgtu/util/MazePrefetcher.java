@@ -0,0 +1,137 @@
+package edu.penzgtu.util;
+
+import edu.penzgtu.model.Maze;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+// Keeps up to `depth` valid mazes generated ahead of the consumer on background threads. Maze N is
+// always built from stream N of the given name, and take() hands mazes out in index order, so the
+// sequence is the same as generating them one by one regardless of the thread count. A consumer
+// that outruns the producers blocks in take() until the next maze is ready.
+public class MazePrefetcher {
+    private final MazeGenerator generator;
+    private final RandomSource random;
+    private final String stream;
+    private final ExecutorService producers;
+    private final ArrayDeque<Future<Maze>> queue = new ArrayDeque<>();
+    private final long startNanos = System.nanoTime();
+    private final LongAdder produced = new LongAdder();
+    private final LongAdder productionNanos = new LongAdder();
+    private final LongAdder taken = new LongAdder();
+    private final LongAdder waitNanos = new LongAdder();
+    private long submitted;
+
+    public MazePrefetcher(MazeGenerator generator, RandomSource random, String stream, int depth, int threads) {
+        this(generator, random, stream, 0, depth, threads);
+    }
+
+    // Starts the sequence at maze `first`, e.g. to continue a pool restored from a checkpoint.
+    public MazePrefetcher(MazeGenerator generator, RandomSource random, String stream, long first, int depth, int threads) {
+        if (first < 0) throw new IllegalArgumentException("First maze index must not be negative: " + first);
+        if (depth < 1) throw new IllegalArgumentException("Prefetch depth must be positive: " + depth);
+        if (threads < 1) throw new IllegalArgumentException("Producer thread count must be positive: " + threads);
+        this.generator = generator;
+        this.random = random;
+        this.stream = stream;
+        this.submitted = first;
+        AtomicInteger count = new AtomicInteger();
+        this.producers = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "maze-prefetch-" + count.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        synchronized (this) {
+            for (int i = 0; i < depth; i++) submitNext();
+        }
+    }
+
+    public MazeGenerator getGenerator() { return generator; }
+
+    // Blocks until the next maze in sequence is ready, then schedules its replacement.
+    public Maze take() {
+        Future<Maze> next;
+        synchronized (this) {
+            next = queue.poll();
+            if (next == null) throw new IllegalStateException("Prefetcher has been shut down");
+            submitNext();
+        }
+        long start = System.nanoTime();
+        try {
+            return next.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for a maze", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            if (cause instanceof Error) throw (Error) cause;
+            throw new IllegalStateException(cause);
+        } finally {
+            waitNanos.add(System.nanoTime() - start);
+            taken.increment();
+        }
+    }
+
+    // Returns the next maze only if it is already built, without blocking.
+    public Maze poll() {
+        synchronized (this) {
+            Future<Maze> head = queue.peek();
+            if (head == null || !head.isDone()) return null;
+        }
+        return take();
+    }
+
+    public void shutdown() {
+        synchronized (this) {
+            for (Future<Maze> f : queue) f.cancel(true);
+            queue.clear();
+        }
+        producers.shutdownNow();
+    }
+
+    private void submitNext() {
+        long index = submitted++;
+        queue.add(producers.submit(() -> {
+            long start = System.nanoTime();
+            Maze maze = generator.generateValidMaze(random.stream(stream, index));
+            productionNanos.add(System.nanoTime() - start);
+            produced.increment();
+            return maze;
+        }));
+    }
+
+    // Mazes built and waiting to be taken.
+    public synchronized int getQueueDepth() {
+        int ready = 0;
+        for (Future<Maze> f : queue) if (f.isDone()) ready++;
+        return ready;
+    }
+
+    public long getProducedCount() { return produced.sum(); }
+
+    public long getTakenCount() { return taken.sum(); }
+
+    // Mazes produced per second since the prefetcher was created.
+    public double getProductionRate() {
+        double seconds = (System.nanoTime() - startNanos) / 1e9;
+        return seconds <= 0 ? 0 : produced.sum() / seconds;
+    }
+
+    public double getAverageProductionMillis() {
+        long n = produced.sum();
+        return n == 0 ? 0 : productionNanos.sum() / 1e6 / n;
+    }
+
+    public long getConsumerWaitNanos() { return waitNanos.sum(); }
+
+    public double getAverageWaitMillis() {
+        long n = taken.sum();
+        return n == 0 ? 0 : waitNanos.sum() / 1e6 / n;
+    }
+}
@@ -1,71 +1,112 @@
 package edu.penzgtu.util;
 
-import edu.penzgtu.model.Node;
+import edu.penzgtu.metrics.Metrics;
+import edu.penzgtu.metrics.PathfindingEvent;
+import edu.penzgtu.model.Maze;
+import edu.penzgtu.model.ObstacleSchedule;
 
-import java.awt.*;
-import java.util.*;
-import java.util.List;
+import java.util.Arrays;
 
 public class Pathfinding {
-    private static final int SIZE = 32;
-    private static final int OBSTACLE_CYCLE = 4;
-
-    public static List<Point> aStarPathfinding(char[][] maze) {
-        PriorityQueue<Node> openSet = new PriorityQueue<>(Comparator.comparingInt(n -> n.fScore));
-        Set<String> closed = new HashSet<>();
-        Point start = new Point(30, 1);
-        Point goal = new Point(1, 30);
-        openSet.add(new Node(0, 0, start, new ArrayList<>()));
-
-        int[][] directions = {{0, 1}, {1, 0}, {0, -1}, {-1, 0}};
-        while (!openSet.isEmpty()) {
-            Node currentNode = openSet.poll();
-            Point current = currentNode.pos;
-            int time = currentNode.time;
-            List<Point> path = currentNode.path;
-
-            if (current.equals(goal)) {
-                path.add(current);
-                return path;
-            }
+    // Above this many (cell, tick) states the search falls back to avoiding every cell that is ever lethal.
+    private static final long MAX_STATES = 1L << 24;
+    private static final int[] DX = {0, 1, 0, -1};
+    private static final int[] DY = {1, 0, -1, 0};
+
+    private static final ThreadLocal<SearchSpace> SEARCH_SPACE = ThreadLocal.withInitial(SearchSpace::new);
 
-            int timeCycle = time % OBSTACLE_CYCLE;
-            String state = current.x + "," + current.y + "," + timeCycle;
-            if (closed.contains(state)) continue;
-            closed.add(state);
-
-            for (int[] dir : directions) {
-                int nx = current.x + dir[0];
-                int ny = current.y + dir[1];
-                if (nx >= 0 && nx < SIZE && ny >= 0 && ny < SIZE && isObstacleFree(maze, nx, ny, time + 1)) {
-                    List<Point> newPath = new ArrayList<>(path);
-                    newPath.add(current);
-                    int gScore = newPath.size();
-                    int hScore = Math.abs(nx - goal.x) + Math.abs(ny - goal.y);
-                    int fScore = gScore + hScore;
-                    openSet.add(new Node(fScore, time + 1, new Point(nx, ny), newPath));
+    // Returns the path as packed cell indices (y * width + x) from start to goal, or null if unreachable.
+    // The path never enters a cell at a tick when an obstacle is red there. The shortest path through
+    // the bare maze is tried first, since it is optimal whenever it happens to be safe. Otherwise the
+    // search runs over (cell, tick) states, guided by exact distances to the goal in the bare maze.
+    // Time is tracked modulo the obstacles' joint period when that is short; otherwise paths longer
+    // than the maze's maximum path length are not explored.
+    public static int[] aStarPathfinding(Maze maze) {
+        PathfindingEvent event = new PathfindingEvent();
+        event.begin();
+        long start = System.nanoTime();
+        SearchSpace space = SEARCH_SPACE.get();
+        space.expanded = 0;
+        int[] path = findPath(maze, space);
+        Metrics.recordPathSearch(space.expanded, System.nanoTime() - start);
+        if (event.shouldCommit()) {
+            event.nodesExpanded = space.expanded;
+            event.pathLength = path == null ? -1 : path.length - 1;
+            event.commit();
+        }
+        return path;
+    }
+
+    private static int[] findPath(Maze maze, SearchSpace space) {
+        ObstacleSchedule schedule = maze.getObstacleSchedule();
+        int[] path = search(maze, schedule, space, 1, true, IGNORE_OBSTACLES, null);
+        if (path == null || schedule.getObstacleCount() == 0 || isSafe(path, schedule)) return path;
+
+        int width = maze.getWidth(), height = maze.getHeight();
+        long horizon = maze.getConfig().getMaxPathLength() + 1L;
+        if ((long) width * height * Math.min(schedule.getPeriod(), horizon) > MAX_STATES) {
+            return search(maze, schedule, space, 1, true, AVOID_EVER_LETHAL, null);
+        }
+        int cycle = (int) Math.min(schedule.getPeriod(), horizon);
+        return search(maze, schedule, space, cycle, schedule.getPeriod() <= horizon, AVOID_LETHAL,
+                space.distancesToGoal(maze));
+    }
+
+    private static final int IGNORE_OBSTACLES = 0, AVOID_LETHAL = 1, AVOID_EVER_LETHAL = 2;
+
+    private static int[] search(Maze maze, ObstacleSchedule schedule, SearchSpace space, int cycle, boolean wraps,
+                                int obstacles, int[] heuristic) {
+        int width = maze.getWidth();
+        int goalX = maze.getGoalX(), goalY = maze.getGoalY();
+        space.reset(maze.getWidth() * maze.getHeight(), cycle, goalX, goalY, width, heuristic);
+
+        space.open(stateId(maze.index(maze.getStartX(), maze.getStartY()), 0, cycle), 0, -1);
+        try {
+            while (!space.isEmpty()) {
+                int state = space.poll();
+                space.expanded++;
+                int cell = state / cycle;
+                int x = cell % width, y = cell / width;
+                int time = space.g[state];
+                if (x == goalX && y == goalY) return space.buildPath(state, time);
+
+                if (!wraps && time + 1 >= cycle) continue;
+                for (int d = 0; d < 4; d++) {
+                    int nx = x + DX[d];
+                    int ny = y + DY[d];
+                    if (maze.isWall(nx, ny)) continue;
+                    int nextCell = ny * width + nx;
+                    if (heuristic != null && heuristic[nextCell] < 0) continue;
+                    if (obstacles == AVOID_LETHAL && schedule.isLethal(nextCell, time + 1)) continue;
+                    if (obstacles == AVOID_EVER_LETHAL && schedule.isEverLethal(nextCell)) continue;
+                    int next = stateId(nextCell, time + 1, cycle);
+                    if (space.isClosed(next)) continue;
+                    space.open(next, time + 1, d);
                 }
             }
+            return null;
+        } finally {
+            space.release();
         }
-        return null;
     }
 
-    public static boolean isObstacleFree(char[][] maze, int x, int y, int time) {
-        if (x < 0 || x >= SIZE || y < 0 || y >= SIZE) return false;
-        if (maze[y][x] != 'O') return maze[y][x] == '.' || maze[y][x] == 'G';
-        return (time % OBSTACLE_CYCLE) < (OBSTACLE_CYCLE / 2);
+    private static boolean isSafe(int[] path, ObstacleSchedule schedule) {
+        for (int t = 1; t < path.length; t++) {
+            if (schedule.isLethal(path[t], t)) return false;
+        }
+        return true;
     }
 
-    public static int getPathLengthWithTurns(List<Point> path) {
-        if (path.size() < 2) return 0;
-        int steps = path.size() - 1;
+    public static int getPathLengthWithTurns(int[] path, int width) {
+        if (path.length < 2) return 0;
+        int steps = path.length - 1;
         int turns = 0;
         int currentDirection = 1;
-        for (int i = 1; i < path.size() - 1; i++) {
-            Point curr = path.get(i);
-            Point next = path.get(i + 1);
-            int dx = next.x - curr.x;
-            int dy = next.y - curr.y;
+        for (int i = 1; i < path.length - 1; i++) {
+            int curr = path[i];
+            int next = path[i + 1];
+            int dx = next % width - curr % width;
+            int dy = next / width - curr / width;
             int newDirection;
             if (dx == 1) newDirection = 0;
             else if (dx == -1) newDirection = 2;
@@ -76,4 +117,192 @@ public class Pathfinding {
         }
         return steps + turns;
     }
-}
\ No newline at end of file
+
+    private static int stateId(int cell, int time, int cycle) {
+        return cell * cycle + time % cycle;
+    }
+
+    // Per-thread search buffers. Only touched entries are reset after a search, so the cost of a search
+    // does not depend on the buffer size. The layer buffers are kept at the largest size seen up to
+    // one cell layer of the maze, or RETAINED_STATES if that is larger, so bare-maze searches on large
+    // grids reuse them. A time-expanded search that needs more gets buffers of its own, dropped after
+    // the search instead of pinning up to MAX_STATES * 9 bytes on every thread.
+    private static final class SearchSpace {
+        private static final int UNSEEN = -1;
+        private static final int CLOSED = -1;
+        private static final int RETAINED_STATES = 1 << 20;
+
+        int[] layerG = new int[0];
+        int[] layerHeapIndex = new int[0];
+        byte[] layerParentDir = new byte[0];
+        int[] g = layerG;
+        int[] heapIndex = layerHeapIndex;
+        byte[] parentDir = layerParentDir;
+        int retained;
+        int[] heap = new int[64];
+        int[] touched = new int[64];
+        int[] distances = new int[0];
+        int[] heuristic;
+        int size, touchedCount;
+        int expanded;
+        int goalX, goalY, width, cycle;
+
+        void reset(int cells, int cycle, int goalX, int goalY, int width, int[] heuristic) {
+            int states = cells * cycle;
+            retained = Math.max(RETAINED_STATES, cells);
+            if (states > retained) {
+                g = new int[states];
+                Arrays.fill(g, UNSEEN);
+                heapIndex = new int[states];
+                parentDir = new byte[states];
+            } else {
+                if (layerG.length < states) {
+                    layerG = new int[states];
+                    Arrays.fill(layerG, UNSEEN);
+                    layerHeapIndex = new int[states];
+                    layerParentDir = new byte[states];
+                }
+                g = layerG;
+                heapIndex = layerHeapIndex;
+                parentDir = layerParentDir;
+            }
+            this.goalX = goalX;
+            this.goalY = goalY;
+            this.width = width;
+            this.cycle = cycle;
+            this.heuristic = heuristic;
+            size = 0;
+            touchedCount = 0;
+        }
+
+        void release() {
+            for (int i = 0; i < touchedCount; i++) g[touched[i]] = UNSEEN;
+            touchedCount = 0;
+            g = layerG;
+            heapIndex = layerHeapIndex;
+            parentDir = layerParentDir;
+            if (heap.length > retained) heap = new int[64];
+            if (touched.length > retained) touched = new int[64];
+        }
+
+        // BFS step counts from the goal through the bare maze, -1 where the goal cannot be reached.
+        // The search never waits, so these are an exact lower bound on the remaining ticks.
+        int[] distancesToGoal(Maze maze) {
+            int width = maze.getWidth(), height = maze.getHeight(), cells = width * height;
+            if (distances.length < cells) distances = new int[cells];
+            if (heap.length < cells) heap = new int[cells];
+            Arrays.fill(distances, 0, cells, -1);
+            int[] queue = heap;
+            int head = 0, tail = 0;
+            int goal = maze.index(maze.getGoalX(), maze.getGoalY());
+            distances[goal] = 0;
+            queue[tail++] = goal;
+            while (head < tail) {
+                int cell = queue[head++];
+                int x = cell % width, y = cell / width;
+                for (int d = 0; d < 4; d++) {
+                    int nx = x + DX[d], ny = y + DY[d];
+                    if (maze.isWall(nx, ny)) continue;
+                    int next = ny * width + nx;
+                    if (distances[next] >= 0) continue;
+                    distances[next] = distances[cell] + 1;
+                    queue[tail++] = next;
+                }
+            }
+            return distances;
+        }
+
+        boolean isEmpty() { return size == 0; }
+
+        boolean isClosed(int state) { return g[state] != UNSEEN && heapIndex[state] == CLOSED; }
+
+        void open(int state, int cost, int dir) {
+            if (g[state] == UNSEEN) {
+                if (touchedCount == touched.length) touched = Arrays.copyOf(touched, touchedCount * 2);
+                touched[touchedCount++] = state;
+                if (size == heap.length) heap = Arrays.copyOf(heap, size * 2);
+                g[state] = cost;
+                parentDir[state] = (byte) dir;
+                heap[size] = state;
+                heapIndex[state] = size;
+                siftUp(size++);
+            } else if (cost < g[state]) {
+                g[state] = cost;
+                parentDir[state] = (byte) dir;
+                siftUp(heapIndex[state]);
+            }
+        }
+
+        int poll() {
+            int top = heap[0];
+            heapIndex[top] = CLOSED;
+            int last = heap[--size];
+            if (size > 0) {
+                heap[0] = last;
+                heapIndex[last] = 0;
+                siftDown(0);
+            }
+            return top;
+        }
+
+        // Walks parent directions back from the goal; each step moves one cell and one tick back.
+        int[] buildPath(int goalState, int length) {
+            int[] path = new int[length + 1];
+            int cell = goalState / cycle;
+            for (int i = length; i >= 0; i--) {
+                path[i] = cell;
+                if (i == 0) break;
+                int d = parentDir[cell * cycle + i % cycle];
+                cell -= DY[d] * width + DX[d];
+            }
+            return path;
+        }
+
+        private int f(int state) {
+            int cell = state / cycle;
+            if (heuristic != null) return g[state] + heuristic[cell];
+            return g[state] + Math.abs(cell % width - goalX) + Math.abs(cell / width - goalY);
+        }
+
+        private void siftUp(int i) {
+            int state = heap[i];
+            int fs = f(state);
+            while (i > 0) {
+                int p = (i - 1) >>> 1;
+                int other = heap[p];
+                if (!less(fs, state, f(other), other)) break;
+                heap[i] = other;
+                heapIndex[other] = i;
+                i = p;
+            }
+            heap[i] = state;
+            heapIndex[state] = i;
+        }
+
+        private void siftDown(int i) {
+            int state = heap[i];
+            int fs = f(state);
+            int half = size >>> 1;
+            while (i < half) {
+                int c = 2 * i + 1;
+                int fc = f(heap[c]);
+                if (c + 1 < size) {
+                    int fr = f(heap[c + 1]);
+                    if (less(fr, heap[c + 1], fc, heap[c])) { c++; fc = fr; }
+                }
+                int child = heap[c];
+                if (!less(fc, child, fs, state)) break;
+                heap[i] = child;
+                heapIndex[child] = i;
+                i = c;
+            }
+            heap[i] = state;
+            heapIndex[state] = i;
+        }
+
+        // Ties on f prefer the deeper state, which reaches the goal with fewer expansions.
+        private boolean less(int fa, int a, int fb, int b) {
+            return fa < fb || (fa == fb && g[a] > g[b]);
+        }
+    }
+}
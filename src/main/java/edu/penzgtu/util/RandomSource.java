@@ -0,0 +1,33 @@
+package edu.penzgtu.util;
+
+import java.util.SplittableRandom;
+
+// Derives independent random streams from a single run seed. A stream depends only on the seed,
+// the component name and the index, never on the order in which streams are requested or on
+// the thread that requests them.
+public final class RandomSource {
+    private final long seed;
+
+    public RandomSource(long seed) {
+        this.seed = seed;
+    }
+
+    public long getSeed() { return seed; }
+
+    public SplittableRandom stream(String component) {
+        return stream(component, 0);
+    }
+
+    public SplittableRandom stream(String component, long index) {
+        long h = mix(seed ^ 0x9E3779B97F4A7C15L);
+        for (int i = 0; i < component.length(); i++) h = mix(h ^ component.charAt(i));
+        return new SplittableRandom(mix(h ^ mix(index)));
+    }
+
+    // SplitMix64 finalizer.
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
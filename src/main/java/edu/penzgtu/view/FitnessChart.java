@@ -0,0 +1,108 @@
+package edu.penzgtu.view;
+
+import org.jfree.chart.ChartFactory;
+import org.jfree.chart.ChartPanel;
+import org.jfree.chart.JFreeChart;
+import org.jfree.chart.plot.PlotOrientation;
+import org.jfree.data.xy.XYSeries;
+import org.jfree.data.xy.XYSeriesCollection;
+
+import javax.swing.*;
+import java.awt.*;
+import java.util.Arrays;
+
+// Fitness-per-generation chart that is built once. Points are appended without notifying the
+// chart and a timer fires at most one redraw per interval. Once more than MAX_POINTS generations
+// are shown, only every stride-th generation is plotted and the stride doubles as the run grows.
+public class FitnessChart extends JPanel {
+    private static final int REDRAW_INTERVAL_MS = 100;
+    private static final int MAX_POINTS = 2000;
+
+    private final XYSeries successSeries = new XYSeries("Фитнес - Победа");
+    private final XYSeries failureSeries = new XYSeries("Фитнес - Поражение");
+    private final Timer redrawTimer;
+
+    private double[] fitness = new double[256];
+    private boolean[] success = new boolean[256];
+    private int size;
+    private int stride = 1;
+    private boolean dirty;
+
+    public FitnessChart() {
+        super(new BorderLayout());
+        XYSeriesCollection dataset = new XYSeriesCollection();
+        dataset.addSeries(successSeries);
+        dataset.addSeries(failureSeries);
+        JFreeChart chart = ChartFactory.createXYLineChart(
+                "Зависимость побед от фитнеса",
+                "Поколение",
+                "Фитнес",
+                dataset,
+                PlotOrientation.VERTICAL,
+                true,
+                true,
+                false
+        );
+        chart.getXYPlot().getRenderer().setSeriesPaint(0, Color.BLUE);
+        chart.getXYPlot().getRenderer().setSeriesPaint(1, Color.RED);
+
+        ChartPanel chartPanel = new ChartPanel(chart);
+        chartPanel.setPreferredSize(new Dimension(500, 300));
+        add(chartPanel, BorderLayout.CENTER);
+
+        redrawTimer = new Timer(REDRAW_INTERVAL_MS, e -> flush());
+        redrawTimer.start();
+    }
+
+    public void addPoint(double value, boolean won) {
+        if (size == fitness.length) {
+            fitness = Arrays.copyOf(fitness, size * 2);
+            success = Arrays.copyOf(success, size * 2);
+        }
+        fitness[size] = value;
+        success[size] = won;
+        if (size % stride == 0) seriesFor(won).add(size, value, false);
+        size++;
+        if (successSeries.getItemCount() + failureSeries.getItemCount() > MAX_POINTS) downsample();
+        dirty = true;
+    }
+
+    // Playback decides the outcome of the latest generation after its point was added.
+    public void setLastSuccess(boolean won) {
+        if (size == 0 || success[size - 1] == won) return;
+        int last = size - 1;
+        success[last] = won;
+        if (last % stride == 0) {
+            XYSeries from = seriesFor(!won);
+            from.remove(from.getItemCount() - 1);
+            seriesFor(won).add(last, fitness[last], false);
+        }
+        dirty = true;
+    }
+
+    public void clear() {
+        size = 0;
+        stride = 1;
+        successSeries.clear();
+        failureSeries.clear();
+        dirty = false;
+    }
+
+    private XYSeries seriesFor(boolean won) {
+        return won ? successSeries : failureSeries;
+    }
+
+    private void downsample() {
+        stride *= 2;
+        successSeries.clear();
+        failureSeries.clear();
+        for (int i = 0; i < size; i += stride) seriesFor(success[i]).add(i, fitness[i], false);
+    }
+
+    private void flush() {
+        if (!dirty) return;
+        dirty = false;
+        successSeries.fireSeriesChanged();
+        failureSeries.fireSeriesChanged();
+    }
+}
@@ -1,49 +1,47 @@
 package edu.penzgtu.view;
 
-import edu.penzgtu.evolution.Action;
+import edu.penzgtu.evolution.Simulation;
 import edu.penzgtu.evolution.Strategy;
-import edu.penzgtu.model.Agent;
-import edu.penzgtu.model.Obstacle;
+import edu.penzgtu.model.Maze;
 
 import javax.swing.*;
 import java.awt.*;
-import java.util.List;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.Arrays;
 
 public class MazePanel extends JPanel {
-    private static final int SIZE = 32;
     private static final int CELL_SIZE = 20;
-    private static final int CYCLE_LENGTH = 4;
-
-    private char[][] maze;
-    private final Agent agent;
+    private static final int MAX_VIEW_SIZE = 640;
+    private static final int STATUS_WIDTH = 220;
+    private static final int STATUS_HEIGHT = 40;
+
+    private Maze maze;
+    private int cellSize;
+    private BufferedImage staticLayer;
+    private int[] dirtyCells = new int[16];
+    private int dirtyCount;
+    private final Simulation simulation = new Simulation();
     private Strategy strategy;
-    private List<Obstacle> obstacles;
-    private int steps;
-    private boolean dead;
-    private boolean goalReached;
 
-    public MazePanel(char[][] maze) {
-        this.maze = maze;
-        this.agent = new Agent(1, 1, 1);
-        setPreferredSize(new Dimension(SIZE * CELL_SIZE, SIZE * CELL_SIZE));
-        resetSimulation();
+    public MazePanel(Maze maze) {
+        setMaze(maze);
     }
 
-    public void setMaze(char[][] maze) {
+    public void setMaze(Maze maze) {
         this.maze = maze;
-        repaint();
-    }
-
-    public void setObstacles(List<Obstacle> obstacles) {
-        this.obstacles = obstacles;
+        // Large mazes shrink their cells so the whole grid stays on screen.
+        cellSize = Math.max(1, Math.min(CELL_SIZE, MAX_VIEW_SIZE / Math.max(maze.getWidth(), maze.getHeight())));
+        setPreferredSize(new Dimension(maze.getWidth() * cellSize, maze.getHeight() * cellSize));
+        staticLayer = null;
+        revalidate();
+        resetSimulation();
     }
 
     public void simulateStrategy(Strategy strat) {
         this.strategy = strat;
         resetSimulation();
-        while (steps < 200 && !goalReached && !dead) {
-            stepSimulation();
-        }
+        simulation.run(strat, maze.getConfig().getMaxSteps());
         repaint();
     }
 
@@ -52,152 +50,116 @@ public class MazePanel extends JPanel {
             this.strategy = strat;
             resetSimulation();
         }
-        if (steps < 200 && !goalReached && !dead) {
-            stepSimulation();
+        if (!isFinished()) {
+            dirtyCount = 0;
+            markMovingCells();
+            simulation.step(strat);
+            markMovingCells();
+            repaintDirtyCells();
         }
-        repaint();
     }
 
-    public void resetSimulation() {
-        agent.x = 1;
-        agent.y = 1;
-        agent.direction = 1;
-        steps = 0;
-        dead = false;
-        goalReached = false;
-        repaint();
-    }
-
-    private void stepSimulation() {
-        if (obstacles != null) updateObstacles();
-        boolean frontFree = isFree(agent.direction);
-        boolean rightFree = isFree((agent.direction + 1) % 4);
-        Action action = strategy.chooseAction(frontFree, rightFree);
-
-        switch (action) {
-            case FORWARD:
-                if (isFree(agent.direction)) moveAgent();
-                break;
-            case TURN_LEFT:
-                agent.direction = (agent.direction + 3) % 4;
-                break;
-            case TURN_RIGHT:
-                agent.direction = (agent.direction + 1) % 4;
-                break;
-            case STOP:
-                break;
-        }
-
-        if (isGoalReached()) {
-            goalReached = true;
-        }
-
-        if (obstacles != null) {
-            for (Obstacle ob : obstacles) {
-                if (ob.x == agent.x && ob.y == agent.y && ob.cycleOffset == CYCLE_LENGTH - 1) {
-                    dead = true;
-                    break;
-                }
-            }
+    // Only the agent, the obstacles and the status text change between steps, so only the area
+    // around their old and new cells is repainted; everything else comes from the cached static layer.
+    private void markMovingCells() {
+        markDirty(simulation.getX(), simulation.getY());
+        for (int i = 0; i < simulation.getObstacleCount(); i++) {
+            markDirty(simulation.getObstacleX(i), simulation.getObstacleY(i));
         }
-
-        steps++;
     }
 
-    private void moveAgent() {
-        switch (agent.direction) {
-            case 0: agent.y--; break;
-            case 1: agent.x++; break;
-            case 2: agent.y++; break;
-            case 3: agent.x--; break;
-        }
+    private void markDirty(int x, int y) {
+        if (dirtyCount == dirtyCells.length) dirtyCells = Arrays.copyOf(dirtyCells, dirtyCount * 2);
+        dirtyCells[dirtyCount++] = maze.index(x, y);
     }
 
-    public int getSteps() { return steps; }
-    public boolean isDead() { return dead; }
-    public boolean isGoalReached() { return maze[agent.y][agent.x] == 'G'; }
-
-    private void updateObstacles() {
-        for (Obstacle ob : obstacles) {
-            int nx = ob.x + ob.dx;
-            int ny = ob.y + ob.dy;
-            if (nx <= 0 || nx >= SIZE-1 || ny <= 0 || ny >= SIZE-1 || maze[ny][nx] == '#') {
-                ob.dx = -ob.dx;
-                ob.dy = -ob.dy;
-            } else {
-                ob.x = nx;
-                ob.y = ny;
-            }
-            ob.cycleOffset = (ob.cycleOffset + 1) % CYCLE_LENGTH;
+    // One synchronous paint over the bounds of all dirty cells and the status box; paintComponent
+    // skips whatever lies outside the clip, so a step costs one pass over the obstacles.
+    private void repaintDirtyCells() {
+        int width = maze.getWidth();
+        Rectangle dirty = new Rectangle(0, maze.getHeight() * cellSize - STATUS_HEIGHT, STATUS_WIDTH, STATUS_HEIGHT);
+        for (int i = 0; i < dirtyCount; i++) {
+            int cell = dirtyCells[i];
+            dirty.add(new Rectangle((cell % width) * cellSize, (cell / width) * cellSize, cellSize, cellSize));
         }
+        paintImmediately(dirty);
     }
 
-    private boolean isFree(int dir) {
-        int nx = agent.x, ny = agent.y;
-        switch (dir) {
-            case 0: ny--; break;
-            case 1: nx++; break;
-            case 2: ny++; break;
-            case 3: nx--; break;
-        }
-        return ny >= 0 && ny < SIZE && nx >= 0 && nx < SIZE && maze[ny][nx] != '#';
+    public void resetSimulation() {
+        simulation.reset(maze);
+        repaint();
     }
 
+    public int getSteps() { return simulation.getSteps(); }
+    public boolean isDead() { return simulation.getStatus() == Simulation.Status.DEAD; }
+    public boolean isGoalReached() { return simulation.getStatus() == Simulation.Status.GOAL; }
+    // Dead, at the goal, stopped by the strategy or out of steps.
+    public boolean isFinished() { return !simulation.isRunning() || simulation.getSteps() >= maze.getConfig().getMaxSteps(); }
+
     @Override
     protected void paintComponent(Graphics g) {
         super.paintComponent(g);
-        if (maze == null || maze.length != SIZE) return;
-        for (int y = 0; y < SIZE; y++) {
-            for (int x = 0; x < SIZE; x++) {
-                char cell = maze[y][x];
-                int px = x * CELL_SIZE;
-                int py = y * CELL_SIZE;
-                switch (cell) {
-                    case '#': g.setColor(Color.BLACK); break;
-                    case 'G': g.setColor(Color.GREEN); break;
-                    default: g.setColor(Color.WHITE);
-                }
-                g.fillRect(px, py, CELL_SIZE, CELL_SIZE);
-            }
-        }
-
-        if (obstacles != null) {
-            for (Obstacle ob : obstacles) {
-                int px = ob.x * CELL_SIZE;
-                int py = ob.y * CELL_SIZE;
-                int c = ob.cycleOffset;
-                if (c < 2) g.setColor(Color.YELLOW);
-                else if (c == 2) g.setColor(Color.ORANGE);
-                else g.setColor(Color.RED);
-                g.fillRect(px, py, CELL_SIZE, CELL_SIZE);
-            }
+        if (maze == null) return;
+        if (staticLayer == null) staticLayer = renderStaticLayer();
+        g.drawImage(staticLayer, 0, 0, null);
+        Rectangle clip = g.getClipBounds();
+
+        for (int i = 0; i < simulation.getObstacleCount(); i++) {
+            int px = simulation.getObstacleX(i) * cellSize;
+            int py = simulation.getObstacleY(i) * cellSize;
+            if (clip != null && !clip.intersects(px, py, cellSize, cellSize)) continue;
+            int c = simulation.getObstaclePhase(i);
+            if (c < 2) g.setColor(Color.YELLOW);
+            else if (c == 2) g.setColor(Color.ORANGE);
+            else g.setColor(Color.RED);
+            g.fillRect(px, py, cellSize, cellSize);
         }
 
         g.setColor(Color.BLUE);
-        int ax = agent.x * CELL_SIZE;
-        int ay = agent.y * CELL_SIZE;
-        g.fillOval(ax, ay, CELL_SIZE, CELL_SIZE);
+        int ax = simulation.getX() * cellSize;
+        int ay = simulation.getY() * cellSize;
+        g.fillOval(ax, ay, cellSize, cellSize);
 
         g.setColor(Color.YELLOW);
-        int cx = ax + CELL_SIZE / 2, cy = ay + CELL_SIZE / 2;
+        int cx = ax + cellSize / 2, cy = ay + cellSize / 2;
         int dx = 0, dy = 0;
-        switch (agent.direction) {
-            case 0: dy = -CELL_SIZE / 2; break;
-            case 1: dx = CELL_SIZE / 2; break;
-            case 2: dy = CELL_SIZE / 2; break;
-            case 3: dx = -CELL_SIZE / 2; break;
+        switch (simulation.getDirection()) {
+            case 0: dy = -cellSize / 2; break;
+            case 1: dx = cellSize / 2; break;
+            case 2: dy = cellSize / 2; break;
+            case 3: dx = -cellSize / 2; break;
         }
         g.drawLine(cx, cy, cx + dx, cy + dy);
 
         g.setColor(Color.BLACK);
-        g.drawString("Шагов: " + steps, 5, SIZE * CELL_SIZE - 5);
+        g.drawString("Шагов: " + simulation.getSteps(), 5, maze.getHeight() * cellSize - 5);
 
-        if (dead) {
+        if (isDead()) {
             g.setColor(Color.RED);
-            g.drawString("Статус: Агент погиб", 5, SIZE * CELL_SIZE - 25);
+            g.drawString("Статус: Агент погиб", 5, maze.getHeight() * cellSize - 25);
         } else if (isGoalReached()) {
             g.setColor(Color.GREEN);
-            g.drawString("Статус: Успех!", 5, SIZE * CELL_SIZE - 25);
+            g.drawString("Статус: Успех!", 5, maze.getHeight() * cellSize - 25);
+        }
+    }
+
+    // Walls and the goal never change for a given maze, so they are drawn once straight into the pixel buffer.
+    private BufferedImage renderStaticLayer() {
+        int width = maze.getWidth(), height = maze.getHeight();
+        int imageWidth = width * cellSize;
+        BufferedImage image = new BufferedImage(imageWidth, height * cellSize, BufferedImage.TYPE_INT_RGB);
+        int[] pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+        int wall = Color.BLACK.getRGB(), goal = Color.GREEN.getRGB(), floor = Color.WHITE.getRGB();
+        for (int y = 0; y < height; y++) {
+            int rowStart = y * cellSize * imageWidth;
+            for (int x = 0; x < width; x++) {
+                int color = maze.isWall(x, y) ? wall : maze.isGoal(x, y) ? goal : floor;
+                Arrays.fill(pixels, rowStart + x * cellSize, rowStart + (x + 1) * cellSize, color);
+            }
+            for (int r = 1; r < cellSize; r++) {
+                System.arraycopy(pixels, rowStart, pixels, rowStart + r * imageWidth, imageWidth);
+            }
         }
+        return image;
     }
-}
\ No newline at end of file
+}